@@ -10,7 +10,6 @@ import  android.graphics.Rect;
 import  android.graphics.PorterDuff.Mode;
 import  android.graphics.drawable.Drawable;
 import  android.os.Build;
-import  android.os.SystemClock;
 import  android.util.AttributeSet;
 import  android.util.Log;
 import  android.util.TypedValue;
@@ -22,9 +21,10 @@ import  org.xmlpull.v1.XmlPullParserException;
 
 import  robertapengelly.support.lollipopdrawables.R;
 
-public class AnimatedRotateDrawable extends LollipopDrawable implements Animatable, Drawable.Callback, Runnable {
+public class AnimatedRotateDrawable extends LollipopDrawable implements Drawable.Callback, ReversibleAnimatable,
+    Runnable {
 
-    private boolean mMutated, mRunning;
+    private boolean mMutated, mReversed, mRunning;
     private float mCurrentDegrees, mIncrement;
     
     private AnimatedRotateState mState;
@@ -236,7 +236,7 @@ public class AnimatedRotateDrawable extends LollipopDrawable implements Animatab
     private void nextFrame() {
     
         unscheduleSelf(this);
-        scheduleSelf(this, (SystemClock.uptimeMillis() + mState.mFrameDuration));
+        scheduleSelf(this, (FrameScheduler.getDefault().currentFrameTimeMillis() + mState.mFrameDuration));
     
     }
     
@@ -260,16 +260,36 @@ public class AnimatedRotateDrawable extends LollipopDrawable implements Animatab
     
         // TODO: This should be computed in draw(Canvas), based on the amount
         // of time since the last frame drawn
-        mCurrentDegrees += mIncrement;
+        if (mReversed) {
         
-        if (mCurrentDegrees > (360.0f - mIncrement))
-            mCurrentDegrees = 0.0f;
+            mCurrentDegrees -= mIncrement;
+            
+            if (mCurrentDegrees < 0.0f)
+                mCurrentDegrees = (360.0f - mIncrement);
+        
+        } else {
+        
+            mCurrentDegrees += mIncrement;
+            
+            if (mCurrentDegrees > (360.0f - mIncrement))
+                mCurrentDegrees = 0.0f;
+        
+        }
         
         invalidateSelf();
         nextFrame();
     
     }
     
+    /** Turns the rotation the other way, continuing from the current angle. */
+    @Override
+    public void reverse() {
+    
+        mReversed = !mReversed;
+        start();
+    
+    }
+    
     @Override
     public void scheduleDrawable(Drawable who, Runnable what, long when) {
         scheduleSelf(what, when);
@@ -7,14 +7,12 @@ import  android.graphics.drawable.Drawable;
 import  android.util.AttributeSet;
 import  android.util.Log;
 import  android.util.StateSet;
-import  android.view.animation.Interpolator;
 
 import  java.io.IOException;
 
 import  org.xmlpull.v1.XmlPullParser;
 import  org.xmlpull.v1.XmlPullParserException;
 
-import  robertapengelly.support.animation.ObjectAnimator;
 import  robertapengelly.support.lollipopdrawables.R;
 
 /**
@@ -241,7 +239,7 @@ public class AnimatedStateListDrawable extends StateListDrawable {
         
         }
         
-        states = StateSet.trimStateSet(states, j);
+        states = StateSetMatcher.intern(StateSet.trimStateSet(states, j));
         
         final Drawable dr;
         
@@ -315,6 +313,20 @@ public class AnimatedStateListDrawable extends StateListDrawable {
     
     }
     
+    /**
+     * Returns the drawable that animates a transition, looking through nested containers such
+     * as selectors for an animated child. Nested animated selectors run their own transitions.
+     */
+    private static Drawable findTransitionTarget(Drawable d) {
+    
+        while ((d instanceof DrawableContainer) && !(d instanceof Animatable)
+            && !(d instanceof AnimatedStateListDrawable))
+            d = d.getCurrent();
+        
+        return d;
+    
+    }
+    
     private boolean selectTransition(int toIndex) {
     
         final int fromIndex;
@@ -371,12 +383,12 @@ public class AnimatedStateListDrawable extends StateListDrawable {
         selectDrawable(transitionIndex);
         
         final Transition transition;
-        final Drawable d = getCurrent();
+        final Drawable d = findTransitionTarget(getCurrent());
         
         if (d instanceof AnimationDrawable) {
         
             final boolean reversed = state.isTransitionReversed(fromId, toId);
-            transition = new AnimationDrawableTransition((AnimationDrawable) d, reversed);
+            transition = new AnimationDrawableTransition((AnimationDrawable) d, this, reversed);
         
         }/* TODO: Add functionality if needed
           else if (d instanceof AnimatedVectorDrawable) {
@@ -427,25 +439,45 @@ public class AnimatedStateListDrawable extends StateListDrawable {
     
     }
     
-    private static class AnimationDrawableTransition  extends Transition {
+    /**
+     * Steps an {@link AnimationDrawable} through its frames by scheduling itself on the owning
+     * drawable for the end of each frame, selecting frames directly instead of animating the
+     * current index through reflection.
+     */
+    private static class AnimationDrawableTransition  extends Transition implements Runnable {
     
-        private final ObjectAnimator mAnim;
+        private final AnimationDrawable mAnim;
+        private final Drawable mOwner;
+        
+        /** Duration of each frame, in frame order. */
+        private final int[] mFrameTimes;
+        private final int mTotalDuration;
+        
+        private boolean mReversed;
+        private boolean mRunning;
+        
+        /** Frame time at which the current run started, or would have started when reversed mid-flight. */
+        private long mStartTime;
         
-        public AnimationDrawableTransition(AnimationDrawable ad, boolean reversed) {
+        public AnimationDrawableTransition(AnimationDrawable ad, Drawable owner, boolean reversed) {
         
             final int frameCount = ad.getNumberOfFrames();
             
-            final int fromFrame = (reversed ? (frameCount - 1) : 0);
-            final int toFrame = (reversed ? 0 : (frameCount - 1));
+            final int[] frameTimes = new int[frameCount];
+            int totalDuration = 0;
+            
+            for (int i = 0; i < frameCount; ++i) {
             
-            final FrameInterpolator interp = new FrameInterpolator(ad, reversed);
-            final ObjectAnimator anim = ObjectAnimator.ofInt(ad, "currentIndex", fromFrame, toFrame);
+                frameTimes[i] = ad.getDuration(i);
+                totalDuration += frameTimes[i];
             
-            //anim.setAutoCancel(true);
-            anim.setDuration(interp.getTotalDuration());
-            anim.setInterpolator(interp);
+            }
             
-            mAnim = anim;
+            mAnim = ad;
+            mFrameTimes = frameTimes;
+            mOwner = owner;
+            mReversed = reversed;
+            mTotalDuration = totalDuration;
         
         }
         
@@ -456,28 +488,109 @@ public class AnimatedStateListDrawable extends StateListDrawable {
         
         @Override
         public void reverse() {
-            mAnim.reverse();
+        
+            final long now = FrameScheduler.getDefault().currentFrameTimeMillis();
+            
+            // Continue from the same point in the opposite direction, or replay the whole
+            // transition backwards if it already finished.
+            final long elapsed = (mRunning ? Math.min((now - mStartTime), mTotalDuration) : mTotalDuration);
+            
+            mOwner.unscheduleSelf(this);
+            
+            mReversed = !mReversed;
+            mRunning = true;
+            mStartTime = (now - (mTotalDuration - elapsed));
+            
+            step(now);
+        
+        }
+        
+        @Override
+        public void run() {
+            step(FrameScheduler.getDefault().currentFrameTimeMillis());
         }
         
         @Override
         public void start() {
-            AnimatorsCompat.startWithAutoCancel(mAnim);
+        
+            final long now = FrameScheduler.getDefault().currentFrameTimeMillis();
+            
+            mOwner.unscheduleSelf(this);
+            
+            mRunning = true;
+            mStartTime = now;
+            
+            step(now);
+        
+        }
+        
+        /** Selects the frame for the specified time and schedules the next frame change. */
+        private void step(long now) {
+        
+            if (!mRunning)
+                return;
+            
+            final int[] frameTimes = mFrameTimes;
+            final int frameCount = frameTimes.length;
+            
+            if (frameCount == 0) {
+            
+                mRunning = false;
+                return;
+            
+            }
+            
+            final long elapsed = (now - mStartTime);
+            
+            // Find the current frame, in playback order, and when it ends.
+            long frameEnd = 0;
+            int i = 0;
+            
+            while (i < frameCount) {
+            
+                frameEnd += frameTimes[mReversed ? (frameCount - i - 1) : i];
+                
+                if (elapsed < frameEnd)
+                    break;
+                
+                ++i;
+            
+            }
+            
+            final boolean finished = (i >= frameCount);
+            
+            if (finished)
+                i = (frameCount - 1);
+            
+            mAnim.setCurrentIndex(mReversed ? (frameCount - i - 1) : i);
+            
+            if (finished)
+                mRunning = false;
+            else
+                mOwner.scheduleSelf(this, (mStartTime + frameEnd));
+        
         }
         
         @Override
         public void stop() {
-            mAnim.cancel();
+        
+            mRunning = false;
+            mOwner.unscheduleSelf(this);
+        
         }
     
     }
     
     static class AnimatedStateListState extends StateListState {
     
-        private static final int REVERSE_MASK = 0x1;
-        private static final int REVERSE_SHIFT = 32;
+        /** Set in a transition value if the transition has to be played in reverse. */
+        private static final int REVERSED_BIT = 0x1;
+        
+        /** Child index of each transition shifted left by one, plus {@link #REVERSED_BIT}. */
+        final LongIntHashMap mTransitions;
         
-        final LongSparseArray mTransitions;
-        final SparseArrayCompat mStateIds;
+        /** Keyframe id of each child, 0 for transitions. */
+        int[] mStateIds;
         
         AnimatedStateListState(AnimatedStateListState orig, AnimatedStateListDrawable owner, Resources res) {
             super(orig, owner, res);
@@ -485,12 +598,12 @@ public class AnimatedStateListDrawable extends StateListDrawable {
             if (orig != null) {
             
                 mStateIds = orig.mStateIds.clone();
-                mTransitions = orig.mTransitions.clone();
+                mTransitions = new LongIntHashMap(orig.mTransitions);
             
             } else {
             
-                mStateIds = new SparseArrayCompat();
-                mTransitions = new LongSparseArray(10);
+                mStateIds = new int[getCapacity()];
+                mTransitions = new LongIntHashMap(10);
             
             }
         
@@ -499,7 +612,7 @@ public class AnimatedStateListDrawable extends StateListDrawable {
         int addStateSet(int[] stateSet, Drawable drawable, int id) {
         
             final int index = super.addStateSet(stateSet, drawable);
-            mStateIds.put(index, id);
+            mStateIds[index] = id;
             
             return index;
         
@@ -510,12 +623,12 @@ public class AnimatedStateListDrawable extends StateListDrawable {
             final int pos = super.addChild(anim);
             final long keyFromTo = generateTransitionKey(fromId, toId);
             
-            mTransitions.append(keyFromTo, pos);
+            mTransitions.put(keyFromTo, (pos << 1));
             
             if (reversible) {
             
                 final long keyToFrom = generateTransitionKey(toId, fromId);
-                mTransitions.append(keyToFrom, (pos | (1L << REVERSE_SHIFT)));
+                mTransitions.put(keyToFrom, ((pos << 1) | REVERSED_BIT));
             
             }
             
@@ -524,11 +637,22 @@ public class AnimatedStateListDrawable extends StateListDrawable {
         }
         
         private static long generateTransitionKey(int fromId, int toId) {
-            return (long) fromId << 32 | toId;
+            return (((long) fromId << 32) | (toId & 0xFFFFFFFFL));
         }
         
         int getKeyframeIdAt(int index) {
-            return ((index < 0) ? 0 : (int) mStateIds.get(index, 0));
+            return (((index < 0) || (index >= mStateIds.length)) ? 0 : mStateIds[index]);
+        }
+        
+        @Override
+        public void growArray(int oldSize, int newSize) {
+            super.growArray(oldSize, newSize);
+            
+            final int[] newStateIds = new int[newSize];
+            System.arraycopy(mStateIds, 0, newStateIds, 0, oldSize);
+            
+            mStateIds = newStateIds;
+        
         }
         
         int indexOfKeyframe(int[] stateSet) {
@@ -544,15 +668,15 @@ public class AnimatedStateListDrawable extends StateListDrawable {
         
         int indexOfTransition(int fromId, int toId) {
         
-            final long keyFromTo = generateTransitionKey(fromId, toId);
-            return Long.valueOf(String.valueOf(mTransitions.get(keyFromTo, -1))).intValue();
+            final int value = mTransitions.get(generateTransitionKey(fromId, toId), -1);
+            return ((value < 0) ? -1 : (value >> 1));
         
         }
         
         boolean isTransitionReversed(int fromId, int toId) {
         
-            final long keyFromTo = generateTransitionKey(fromId, toId);
-            return (((int) mTransitions.get(keyFromTo, -1) >> REVERSE_SHIFT & REVERSE_MASK) == 1);
+            final int value = mTransitions.get(generateTransitionKey(fromId, toId), -1);
+            return ((value >= 0) && ((value & REVERSED_BIT) != 0));
         
         }
         
@@ -576,6 +700,16 @@ public class AnimatedStateListDrawable extends StateListDrawable {
             mA = a;
         }
         
+        @Override
+        public boolean canReverse() {
+            return (mA instanceof ReversibleAnimatable);
+        }
+        
+        @Override
+        public void reverse() {
+            ((ReversibleAnimatable) mA).reverse();
+        }
+        
         @Override
         public void start() {
             mA.start();
@@ -634,81 +768,7 @@ public class AnimatedStateListDrawable extends StateListDrawable {
     
     }*/
     
-    /** Interpolates between frames with respect to their individual durations. */
-    private static class FrameInterpolator implements Interpolator {
-    
-        private int mFrames;
-        private int mTotalDuration;
-        
-        private int[] mFrameTimes;
-        
-        public FrameInterpolator(AnimationDrawable d, boolean reversed) {
-            updateFrames(d, reversed);
-        }
-        
-        @Override
-        public float getInterpolation(float input) {
-        
-            final int elapsed = (int) (input * mTotalDuration + 0.5f);
-            final int N = mFrames;
-            
-            final int[] frameTimes = mFrameTimes;
-            
-            // Find the current frame and remaining time within that frame.
-            int remaining = elapsed;
-            int i = 0;
-            
-            while ((i < N) && (remaining >= frameTimes[i])) {
-            
-                remaining -= frameTimes[i];
-                ++i;
-            
-            }
-            
-            // Remaining time is relative of total duration.
-            final float frameElapsed;
-            
-            if (i < N)
-                frameElapsed = (remaining / (float) mTotalDuration);
-            else
-                frameElapsed = 0;
-            
-            return (i / (float) N + frameElapsed);
-        
-        }
-        
-        public int getTotalDuration() {
-            return mTotalDuration;
-        }
-        
-        public int updateFrames(AnimationDrawable d, boolean reversed) {
-        
-            final int N = d.getNumberOfFrames();
-            mFrames = N;
-            
-            if ((mFrameTimes == null) || (mFrameTimes.length < N))
-                mFrameTimes = new int[N];
-            
-            final int[] frameTimes = mFrameTimes;
-            int totalDuration = 0;
-            
-            for (int i = 0; i < N; ++i) {
-            
-                final int duration = d.getDuration(reversed ? (N - i - 1) : i);
-                
-                frameTimes[i] = duration;
-                totalDuration += duration;
-            
-            }
-            
-            mTotalDuration = totalDuration;
-            
-            return totalDuration;
-        
-        }
-    
-    }
-    
+    /** Animation that plays while the selector moves between two keyframes. */
     private static abstract class Transition {
     
         public boolean canReverse() {
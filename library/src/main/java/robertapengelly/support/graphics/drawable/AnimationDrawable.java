@@ -4,7 +4,6 @@ import  android.content.res.Resources;
 import  android.content.res.TypedArray;
 import  android.content.res.Resources.Theme;
 import  android.graphics.drawable.Drawable;
-import  android.os.SystemClock;
 import  android.util.AttributeSet;
 
 import  java.io.IOException;
@@ -61,6 +60,9 @@ import  robertapengelly.support.lollipopdrawables.R;
  */
 public class AnimationDrawable extends DrawableContainer implements Animatable, Runnable {
 
+    /** Number of streamed frames after the current one that are kept loaded. */
+    private static final int STREAM_LOOK_AHEAD = 2;
+
     private final AnimationState mAnimationState;
     
     /** Whether the drawable should animate when visible. */
@@ -105,6 +107,20 @@ public class AnimationDrawable extends DrawableContainer implements Animatable,
     
     }
     
+    /**
+     * Adds a frame that is only loaded from its resource shortly before it is shown and
+     * released again once the animation has moved on, instead of keeping the drawable of
+     * every frame in memory. This trades decoding the frame each time it is shown for a much
+     * smaller footprint on long animations.
+     *
+     * @param res      The resources to load the frame from
+     * @param resId    The drawable resource of the frame
+     * @param duration How long in milliseconds the frame should appear
+     */
+    public void addFrame(Resources res, int resId, int duration) {
+        addFrame(new StreamedFrameDrawable(res, resId, null), duration);
+    }
+    
     public int getCurrentIndex() {
         return super.getCurrentIndex();
     }
@@ -136,6 +152,8 @@ public class AnimationDrawable extends DrawableContainer implements Animatable,
         super.inflateWithAttributes(a, R.styleable.AnimationDrawable_android_visible);
         
         mAnimationState.mOneShot = a.getBoolean(R.styleable.AnimationDrawable_android_oneshot, false);
+        
+        final boolean streamFrames = a.getBoolean(R.styleable.AnimationDrawable_streamFrames, false);
         mAnimationState.setVariablePadding(a.getBoolean(R.styleable.AnimationDrawable_android_variablePadding, false));
         
         a.recycle();
@@ -167,7 +185,9 @@ public class AnimationDrawable extends DrawableContainer implements Animatable,
             
             Drawable dr;
             
-            if (drawableRes != 0)
+            if ((drawableRes != 0) && streamFrames)
+                dr = new StreamedFrameDrawable(r, drawableRes, theme);
+            else if (drawableRes != 0)
                 dr = LollipopDrawablesCompat.getDrawable(r, drawableRes, theme);
             else {
             
@@ -246,6 +266,18 @@ public class AnimationDrawable extends DrawableContainer implements Animatable,
         nextFrame(false);
     }
     
+    @Override
+    public boolean selectDrawable(int idx) {
+    
+        final boolean changed = super.selectDrawable(idx);
+        
+        if (changed && (idx >= 0))
+            updateStreamedFrames(idx);
+        
+        return changed;
+    
+    }
+    
     public void setCurrentIndex(int index) {
         selectDrawable(index);
     }
@@ -269,7 +301,8 @@ public class AnimationDrawable extends DrawableContainer implements Animatable,
             mCurFrame = frame;
             mRunning = true;
             
-            scheduleSelf(this, (SystemClock.uptimeMillis() + mAnimationState.mDurations[frame]));
+            scheduleSelf(this, (FrameScheduler.getDefault().currentFrameTimeMillis()
+                + mAnimationState.mDurations[frame]));
         
         }
     
@@ -368,11 +401,46 @@ public class AnimationDrawable extends DrawableContainer implements Animatable,
     
     }
     
+    /**
+     * Keeps the streamed frames from the one before the current frame, which may still be
+     * fading out, up to {@link #STREAM_LOOK_AHEAD} frames ahead loaded and releases the rest.
+     */
+    private void updateStreamedFrames(int frame) {
+    
+        final AnimationState state = mAnimationState;
+        
+        if ((state == null) || !state.mStreamed)
+            return;
+        
+        final int N = state.getChildCount();
+        
+        for (int i = 0; i < N; ++i) {
+        
+            final Drawable d = state.getChild(i);
+            
+            if (!(d instanceof StreamedFrameDrawable))
+                continue;
+            
+            // How far the frame is ahead of the current one, wrapping around for looping animations.
+            final int ahead = ((i - frame + N) % N);
+            
+            if ((ahead <= STREAM_LOOK_AHEAD) || (ahead == (N - 1)))
+                ((StreamedFrameDrawable) d).load();
+            else
+                ((StreamedFrameDrawable) d).release();
+        
+        }
+    
+    }
+    
     private final static class AnimationState extends DrawableContainerState {
     
         private boolean mOneShot;
         private int[] mDurations;
         
+        /** Whether any of the frames is streamed. */
+        private boolean mStreamed;
+        
         AnimationState(AnimationState orig, AnimationDrawable owner, Resources res) {
             super(orig, owner, res);
             
@@ -380,6 +448,7 @@ public class AnimationDrawable extends DrawableContainer implements Animatable,
             
                 mDurations = orig.mDurations;
                 mOneShot = orig.mOneShot;
+                mStreamed = orig.mStreamed;
             
             } else {
             
@@ -396,6 +465,9 @@ public class AnimationDrawable extends DrawableContainer implements Animatable,
             // the array is accessed because super.addChild(dr) has a side effect on mDurations.
             int pos = super.addChild(dr);
             mDurations[pos] = dur;
+            
+            if (dr instanceof StreamedFrameDrawable)
+                mStreamed = true;
         
         }
         
@@ -1,8 +1,8 @@
 package robertapengelly.support.graphics.drawable;
 
-import  java.lang.ref.WeakReference;
 import  java.util.ArrayList;
-import  java.util.List;
+import  java.util.Arrays;
+import  java.util.HashMap;
 
 import  robertapengelly.support.animation.Animator;
 import  robertapengelly.support.animation.AnimatorListenerAdapter;
@@ -11,62 +11,117 @@ import  robertapengelly.support.animation.PropertyValuesHolder;
 
 class AnimatorsCompat {
 
-    static List<WeakReference<ObjectAnimator>> sRunningAnimators = new ArrayList<>();
+    /**
+     * Running animators indexed by their target and animated properties. Animators remove
+     * themselves once they end or are cancelled, so this only ever holds running animators.
+     * Only accessed from the UI thread.
+     */
+    private static final HashMap<AnimatorKey, ObjectAnimator> sRunningAnimators = new HashMap<>();
     
-    private static boolean hasSameTargetAndProperties(ObjectAnimator self, Animator anim) {
+    private static final Animator.AnimatorListener sUnregisterListener = new AnimatorListenerAdapter() {
     
-        if (anim instanceof ObjectAnimator) {
+        @Override
+        public void onAnimationEnd(Animator animation) {
         
-            PropertyValuesHolder[] theirValues = ((ObjectAnimator) anim).getValues();
-            PropertyValuesHolder[] selfValues = self.getValues();
+            final AnimatorKey key = AnimatorKey.of((ObjectAnimator) animation);
             
-            if ((((ObjectAnimator) anim).getTarget() == self.getTarget()) && (selfValues.length == theirValues.length)) {
-            
-                final int length = selfValues.length;
-                
-                for (int i = 0; i < length; ++i) {
-                
-                    PropertyValuesHolder pvhMine = selfValues[i];
-                    PropertyValuesHolder pvhTheirs = theirValues[i];
-                    
-                    if ((pvhMine.getPropertyName() == null) || !pvhMine.getPropertyName().equals(pvhTheirs.getPropertyName()))
-                        return false;
-                
-                }
-                
-                return true;
-            
-            }
+            if ((key != null) && (sRunningAnimators.get(key) == animation))
+                sRunningAnimators.remove(key);
         
         }
-        
-        return false;
     
-    }
+    };
     
     static void start(ObjectAnimator animator) {
     
-        sRunningAnimators.add(new WeakReference<>(animator));
+        final AnimatorKey key = AnimatorKey.of(animator);
+        
+        if (key != null) {
+        
+            final ArrayList<Animator.AnimatorListener> listeners = animator.getListeners();
+            
+            if ((listeners == null) || !listeners.contains(sUnregisterListener))
+                animator.addListener(sUnregisterListener);
+            
+            sRunningAnimators.put(key, animator);
+        
+        }
+        
         animator.start();
     
     }
     
     static void startWithAutoCancel(ObjectAnimator animator) {
     
-        for (WeakReference<ObjectAnimator> wa : sRunningAnimators) {
+        final AnimatorKey key = AnimatorKey.of(animator);
         
-            ObjectAnimator a = wa.get();
-            
-            if (a == null)
-                continue;
+        if (key != null) {
+        
+            final ObjectAnimator running = sRunningAnimators.get(key);
             
-            if (hasSameTargetAndProperties(animator, a))
-                a.cancel();
+            if (running != null)
+                running.cancel();
         
         }
         
         start(animator);
     
     }
+    
+    /** Identifies an animator by the identity of its target and the names of its properties. */
+    private static final class AnimatorKey {
+    
+        private final int mHashCode;
+        private final String[] mPropertyNames;
+        private final Object mTarget;
+        
+        private AnimatorKey(Object target, String[] propertyNames) {
+        
+            mHashCode = ((31 * System.identityHashCode(target)) + Arrays.hashCode(propertyNames));
+            mPropertyNames = propertyNames;
+            mTarget = target;
+        
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+        
+            if (!(o instanceof AnimatorKey))
+                return false;
+            
+            final AnimatorKey other = (AnimatorKey) o;
+            return ((mTarget == other.mTarget) && Arrays.equals(mPropertyNames, other.mPropertyNames));
+        
+        }
+        
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+        
+        /** Returns the key of the animator, or null if it animates a property without a name. */
+        static AnimatorKey of(ObjectAnimator animator) {
+        
+            final PropertyValuesHolder[] values = animator.getValues();
+            
+            if (values == null)
+                return null;
+            
+            final String[] propertyNames = new String[values.length];
+            
+            for (int i = 0; i < values.length; ++i) {
+            
+                propertyNames[i] = values[i].getPropertyName();
+                
+                if (propertyNames[i] == null)
+                    return null;
+            
+            }
+            
+            return new AnimatorKey(animator.getTarget(), propertyNames);
+        
+        }
+    
+    }
 
 }
\ No newline at end of file
@@ -24,6 +24,7 @@ abstract class BaseProgressDrawable extends LollipopDrawable {
     protected ColorFilter mColorFilter;
     protected PorterDuffColorFilter mTintFilter;
     protected ColorStateList mTintList;
+    private ColorStateListLookup mTintLookup;
     protected PorterDuff.Mode mTintMode = PorterDuff.Mode.SRC_IN;
     protected boolean mUseIntrinsicPadding = true;
     
@@ -189,7 +190,13 @@ abstract class BaseProgressDrawable extends LollipopDrawable {
         
         }
         
-        int tintColor = mTintList.getColorForState(getState(), Color.TRANSPARENT);
+        ColorStateListLookup lookup = mTintLookup;
+        
+        // Compiled again only when the tint list changes.
+        if ((lookup == null) || (lookup.getColorStateList() != mTintList))
+            lookup = mTintLookup = ColorStateListLookup.get(mTintList);
+        
+        int tintColor = lookup.getColorForState(getState(), Color.TRANSPARENT);
         
         // They made PorterDuffColorFilter.setColor() and setMode() @hide.
         mTintFilter = new PorterDuffColorFilter(tintColor, mTintMode);
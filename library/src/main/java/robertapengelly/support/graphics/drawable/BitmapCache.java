@@ -0,0 +1,191 @@
+package robertapengelly.support.graphics.drawable;
+
+import  android.graphics.Bitmap;
+import  android.graphics.Rect;
+
+/**
+ * Cache of the bitmaps decoded while inflating {@link BitmapDrawable}s and
+ * {@link NinePatchDrawable}s, so a source image referenced by many drawables is only decoded
+ * once even when the drawables don't share their constant state.
+ *
+ * <p>Bitmaps are identified by the file they were decoded from, by everything that
+ * changes how it is decoded: the target density, the requested config and dither, and the
+ * decode policy, and by the mipmap hint the drawables set on it. The cache is bounded by the number of bytes of its bitmaps and drops the
+ * least recently used bitmaps first. Install a cache with {@link #setDefault(BitmapCache)},
+ * by default bitmaps are not cached.</p>
+ */
+public class BitmapCache {
+
+    private static volatile BitmapCache sDefault;
+    
+    private final Entries mEntries;
+    
+    /** @param maxSize The maximum number of bytes of bitmaps kept in the cache */
+    public BitmapCache(int maxSize) {
+        mEntries = new Entries(maxSize);
+    }
+    
+    /** Drops all bitmaps in the cache. */
+    public void evictAll() {
+        mEntries.evictAll();
+    }
+    
+    public final int evictionCount() {
+        return mEntries.evictionCount();
+    }
+    
+    /** Returns the cached entry for the specified key, or null if there's none. */
+    Entry get(Key key) {
+        return mEntries.get(key);
+    }
+    
+    /** Returns the cache used while inflating drawables, or null if there's none. */
+    public static BitmapCache getDefault() {
+        return sDefault;
+    }
+    
+    public final int hitCount() {
+        return mEntries.hitCount();
+    }
+    
+    public final int maxSize() {
+        return mEntries.maxSize();
+    }
+    
+    public final int missCount() {
+        return mEntries.missCount();
+    }
+    
+    /**
+     * Caches a bitmap decoded for the specified key.
+     *
+     * @param padding The nine-patch padding returned while decoding the bitmap, or null if
+     *                it wasn't requested
+     */
+    void put(Key key, Bitmap bitmap, Rect padding) {
+        mEntries.put(key, new Entry(bitmap, ((padding != null) ? new Rect(padding) : null)));
+    }
+    
+    public final int putCount() {
+        return mEntries.putCount();
+    }
+    
+    /** Sets the maximum number of bytes of bitmaps kept in the cache. */
+    public void resize(int maxSize) {
+        mEntries.resize(maxSize);
+    }
+    
+    /**
+     * Sets the cache used while inflating drawables.
+     *
+     * @param cache The cache to use, or null to decode every bitmap
+     */
+    public static void setDefault(BitmapCache cache) {
+        sDefault = cache;
+    }
+    
+    /** Returns the number of bytes of bitmaps in the cache. */
+    public final int size() {
+        return mEntries.size();
+    }
+    
+    @Override
+    public String toString() {
+    
+        final int hits = mEntries.hitCount();
+        final int misses = mEntries.missCount();
+        final int hitPercent = (((hits + misses) != 0) ? ((100 * hits) / (hits + misses)) : 0);
+        
+        return String.format("BitmapCache[maxSize=%d,size=%d,hits=%d,misses=%d,evictions=%d,hitRate=%d%%]",
+            mEntries.maxSize(), mEntries.size(), hits, misses, mEntries.evictionCount(), hitPercent);
+    
+    }
+    
+    private static final class Entries extends LruCache<Key, Entry> {
+    
+        Entries(int maxSize) {
+            super(maxSize);
+        }
+        
+        @Override
+        protected int sizeOf(Key key, Entry value) {
+            return (value.mBitmap.getRowBytes() * value.mBitmap.getHeight());
+        }
+    
+    }
+    
+    /** Decoded bitmap and the nine-patch padding returned while decoding it. */
+    static final class Entry {
+    
+        final Bitmap mBitmap;
+        
+        /** Padding of the image, or null if it wasn't requested. */
+        final Rect mPadding;
+        
+        Entry(Bitmap bitmap, Rect padding) {
+        
+            mBitmap = bitmap;
+            mPadding = padding;
+        
+        }
+    
+    }
+    
+    /** Identifies a bitmap by its source file and the way it was decoded. */
+    static final class Key {
+    
+        private final boolean mDither;
+        private final boolean mMipMap;
+        private final boolean mSample;
+        
+        private final int mAssetCookie;
+        private final int mHashCode;
+        private final int mTargetDensity;
+        
+        private final Bitmap.Config mConfig;
+        private final BitmapDecodePolicy mPolicy;
+        private final String mFile;
+        
+        Key(int assetCookie, String file, int targetDensity, Bitmap.Config config, boolean dither,
+            BitmapDecodePolicy policy, boolean sample, boolean mipMap) {
+            
+            mAssetCookie = assetCookie;
+            mConfig = config;
+            mDither = dither;
+            mFile = file;
+            mMipMap = mipMap;
+            mPolicy = policy;
+            mSample = sample;
+            mTargetDensity = targetDensity;
+            
+            int hash = ((31 * assetCookie) + file.hashCode());
+            hash = ((31 * hash) + targetDensity);
+            hash = ((31 * hash) + ((config != null) ? config.hashCode() : 0));
+            hash = ((31 * hash) + System.identityHashCode(policy));
+            
+            mHashCode = ((hash << 3) | (mipMap ? 4 : 0) | (dither ? 2 : 0) | (sample ? 1 : 0));
+        
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+        
+            if (!(o instanceof Key))
+                return false;
+            
+            final Key other = (Key) o;
+            
+            return ((mAssetCookie == other.mAssetCookie) && (mConfig == other.mConfig) && (mDither == other.mDither)
+                && mFile.equals(other.mFile) && (mMipMap == other.mMipMap) && (mPolicy == other.mPolicy)
+                && (mSample == other.mSample) && (mTargetDensity == other.mTargetDensity));
+        
+        }
+        
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+    
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,503 @@
+package robertapengelly.support.graphics.drawable;
+
+import  android.content.res.Resources;
+import  android.graphics.Bitmap;
+import  android.graphics.BitmapFactory;
+import  android.graphics.Rect;
+import  android.os.Build;
+import  android.util.DisplayMetrics;
+import  android.util.TypedValue;
+
+import  java.io.InputStream;
+import  java.io.IOException;
+import  java.util.Arrays;
+
+/**
+ * Decides how the bitmaps of the {@link BitmapDrawable}s and {@link NinePatchDrawable}s in
+ * this library are decoded.
+ *
+ * <p>By default bitmaps are decoded at full size in the default config. A policy with a
+ * maximum size decodes large images with an {@link BitmapFactory.Options#inSampleSize} that
+ * keeps them at least that large, lowering the density of the bitmap so drawables keep the
+ * intrinsic size of the full image. A policy preferring RGB_565 decodes JPEG images, which
+ * are always opaque, at half the memory. Install a policy with
+ * {@link #setDefault(BitmapDecodePolicy)} before inflating drawables, or pass one to the
+ * {@link BitmapDrawable} constructors.</p>
+ *
+ * <p>Nine-patch images are never sampled since their stretch regions are stored at full
+ * size.</p>
+ *
+ * <p>If a default {@link BitmapPool} is installed and holds bitmaps, images are decoded into
+ * bitmaps taken from the pool.</p>
+ */
+public class BitmapDecodePolicy {
+
+    /** Policy decoding every bitmap at full size in the default config. */
+    public static final BitmapDecodePolicy FULL_SIZE = new BitmapDecodePolicy(0, 0, false);
+    
+    private static volatile BitmapDecodePolicy sDefault = FULL_SIZE;
+    
+    private final boolean mPreferRgb565;
+    
+    private final int mMaxHeight;
+    private final int mMaxWidth;
+    
+    /**
+     * @param maxWidth              The width images are displayed at, in pixels of the target
+     *                              density, or 0 if the width doesn't matter
+     * @param maxHeight             The height images are displayed at, in pixels of the target
+     *                              density, or 0 if the height doesn't matter
+     * @param preferRgb565ForOpaque Whether images known to be opaque are decoded as RGB_565
+     */
+    public BitmapDecodePolicy(int maxWidth, int maxHeight, boolean preferRgb565ForOpaque) {
+    
+        if ((maxWidth < 0) || (maxHeight < 0))
+            throw new IllegalArgumentException("Maximum size must not be negative");
+        
+        mMaxHeight = maxHeight;
+        mMaxWidth = maxWidth;
+        mPreferRgb565 = preferRgb565ForOpaque;
+    
+    }
+    
+    private static int bytesPerPixel(Bitmap.Config config) {
+    
+        if (config == Bitmap.Config.ALPHA_8)
+            return 1;
+        
+        if (config == Bitmap.Config.RGB_565)
+            return 2;
+        
+        return 4;
+    
+    }
+    
+    /**
+     * Returns the config to decode an image of the specified type in, or null to use the
+     * default config.
+     *
+     * @param mimeType The type of the image, or null if it isn't known
+     */
+    public Bitmap.Config choosePreferredConfig(String mimeType) {
+        return ((mPreferRgb565 && "image/jpeg".equals(mimeType)) ? Bitmap.Config.RGB_565 : null);
+    }
+    
+    /**
+     * Returns the sample size to decode an image of the specified size with, the largest
+     * power of two that keeps the image at least as large as the maximum size.
+     *
+     * @param width  The width the image would be decoded at, in pixels of the target density
+     * @param height The height the image would be decoded at, in pixels of the target density
+     */
+    public int computeSampleSize(int width, int height) {
+    
+        if ((mMaxWidth == 0) && (mMaxHeight == 0))
+            return 1;
+        
+        int sampleSize = 1;
+        
+        while (((mMaxWidth == 0) || ((width / (sampleSize * 2)) >= mMaxWidth))
+            && ((mMaxHeight == 0) || ((height / (sampleSize * 2)) >= mMaxHeight)))
+            sampleSize *= 2;
+        
+        return sampleSize;
+    
+    }
+    
+    /**
+     * Decodes the image resource with the specified id like
+     * {@link #decodeResource(Resources, int, Rect, BitmapFactory.Options, boolean)}, returning
+     * the bitmap cached by the default {@link BitmapCache} if there is one. The returned
+     * bitmap may be shared with other drawables.
+     *
+     * @param mipMap The mipmap hint the caller sets on the bitmap, bitmaps with different
+     *               hints are cached separately
+     */
+    Bitmap decodeCachedResource(Resources res, int id, Rect outPadding, BitmapFactory.Options opts, boolean sample,
+        boolean mipMap) {
+        
+        final BitmapCache cache = BitmapCache.getDefault();
+        
+        if (cache == null)
+            return decodeResource(res, id, outPadding, opts, sample);
+        
+        final TypedValue value = new TypedValue();
+        
+        try {
+            res.getValue(id, value, true);
+        } catch (Resources.NotFoundException ex) {
+            return null;
+        }
+        
+        if (value.string == null)
+            return decodeResource(res, id, outPadding, opts, sample);
+        
+        if (opts == null)
+            opts = new BitmapFactory.Options();
+        
+        final int targetDensity = ((opts.inTargetDensity != 0) ? opts.inTargetDensity
+            : res.getDisplayMetrics().densityDpi);
+        
+        //noinspection deprecation
+        final BitmapCache.Key key = new BitmapCache.Key(value.assetCookie, value.string.toString(), targetDensity,
+            opts.inPreferredConfig, opts.inDither, this, sample, mipMap);
+        
+        final BitmapCache.Entry entry = cache.get(key);
+        
+        // A bitmap cached without its padding can't serve a nine-patch.
+        if ((entry != null) && ((outPadding == null) || (entry.mPadding != null))) {
+        
+            if (outPadding != null)
+                outPadding.set(entry.mPadding);
+            
+            return entry.mBitmap;
+        
+        }
+        
+        final Bitmap bitmap = decodeResource(res, id, outPadding, opts, sample);
+        
+        if (bitmap != null)
+            cache.put(key, bitmap, outPadding);
+        
+        return bitmap;
+    
+    }
+    
+    /** Decodes the file at the specified path, or returns null if it can't be decoded. */
+    Bitmap decodeFile(String pathName) {
+    
+        if (!needsBounds(false))
+            return BitmapFactory.decodeFile(pathName);
+        
+        final BitmapFactory.Options opts = new BitmapFactory.Options();
+        
+        opts.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(pathName, opts);
+        
+        if (!prepare(opts, 1, true, false))
+            return null;
+        
+        Bitmap bitmap;
+        
+        try {
+            bitmap = BitmapFactory.decodeFile(pathName, opts);
+        } catch (IllegalArgumentException ex) {
+        
+            if (!returnInBitmap(opts))
+                throw ex;
+            
+            bitmap = BitmapFactory.decodeFile(pathName, opts);
+        
+        }
+        
+        return finishDecode(opts, bitmap);
+    
+    }
+    
+    /**
+     * Decodes the image resource with the specified id, or returns null if it can't be
+     * decoded.
+     *
+     * @param outPadding Receives the padding of a nine-patch image, may be null
+     * @param opts       Options to decode with, may be null
+     * @param sample     Whether the image may be sampled
+     */
+    Bitmap decodeResource(Resources res, int id, Rect outPadding, BitmapFactory.Options opts, boolean sample) {
+        return decodeResource(res, id, outPadding, opts, sample, false);
+    }
+    
+    /**
+     * Decodes the image resource with the specified id like
+     * {@link #decodeResource(Resources, int, Rect, BitmapFactory.Options, boolean)}.
+     *
+     * @param released Whether the caller puts the bitmap into the default {@link BitmapPool}
+     *                 once it's done with it, the bitmap is mutable then
+     */
+    Bitmap decodeResource(Resources res, int id, Rect outPadding, BitmapFactory.Options opts, boolean sample,
+        boolean released) {
+        
+        if (opts == null)
+            opts = new BitmapFactory.Options();
+        
+        // Lets the decoder skip scaling images made for the real density in compatibility mode.
+        if (opts.inScreenDensity == 0)
+            opts.inScreenDensity = DrawableReflectiveUtils.getScreenDensity(res.getDisplayMetrics());
+        
+        final TypedValue value = new TypedValue();
+        
+        if (needsBounds(released)) {
+        
+            final boolean scaled = opts.inScaled;
+            
+            // Measure the image as stored, the density scaling is applied below.
+            opts.inJustDecodeBounds = true;
+            opts.inScaled = false;
+            
+            decodeResourceStream(res, id, value, null, opts);
+            
+            opts.inScaled = scaled;
+            
+            int density = value.density;
+            
+            if (density == TypedValue.DENSITY_DEFAULT)
+                density = DisplayMetrics.DENSITY_DEFAULT;
+            
+            final int targetDensity = ((opts.inTargetDensity != 0) ? opts.inTargetDensity
+                : res.getDisplayMetrics().densityDpi);
+            
+            final float scale = ((scaled && (density != TypedValue.DENSITY_NONE) && (density != 0)
+                && (density != opts.inScreenDensity)) ? (targetDensity / (float) density) : 1.0f);
+            
+            if (!prepare(opts, scale, sample, released))
+                return null;
+        
+        }
+        
+        Bitmap bitmap;
+        
+        try {
+            bitmap = decodeResourceStream(res, id, value, outPadding, opts);
+        } catch (IllegalArgumentException ex) {
+        
+            if (!returnInBitmap(opts))
+                throw ex;
+            
+            bitmap = decodeResourceStream(res, id, value, outPadding, opts);
+        
+        }
+        
+        return finishDecode(opts, bitmap);
+    
+    }
+    
+    private static Bitmap decodeResourceStream(Resources res, int id, TypedValue value, Rect outPadding,
+        BitmapFactory.Options opts) {
+        
+        Bitmap bitmap = null;
+        
+        try {
+        
+            final InputStream is = res.openRawResource(id, value);
+            
+            try {
+                bitmap = BitmapFactory.decodeResourceStream(res, value, is, outPadding, opts);
+            } finally {
+                is.close();
+            }
+        
+        } catch (IOException ignored) {
+        } catch (Resources.NotFoundException ignored) {}
+        
+        return bitmap;
+    
+    }
+    
+    /**
+     * Decodes the specified stream, or returns null if it can't be decoded.
+     *
+     * <p>The stream is read into memory once and both the size and the image are decoded from
+     * there. Rewinding the stream instead doesn't work before KitKat, where the decoder marks
+     * the stream itself and so drops the mark needed to read it again.</p>
+     */
+    Bitmap decodeStream(InputStream is) {
+    
+        if (!needsBounds(false) || (is == null))
+            return BitmapFactory.decodeStream(is);
+        
+        final byte[] data;
+        
+        try {
+            data = readFully(is);
+        } catch (IOException ex) {
+            return null;
+        }
+        
+        final BitmapFactory.Options opts = new BitmapFactory.Options();
+        
+        opts.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, opts);
+        
+        if (!prepare(opts, 1, true, false))
+            return null;
+        
+        Bitmap bitmap;
+        
+        try {
+            bitmap = BitmapFactory.decodeByteArray(data, 0, data.length, opts);
+        } catch (IllegalArgumentException ex) {
+        
+            if (!returnInBitmap(opts))
+                throw ex;
+            
+            bitmap = BitmapFactory.decodeByteArray(data, 0, data.length, opts);
+        
+        }
+        
+        return finishDecode(opts, bitmap);
+    
+    }
+    
+    /**
+     * Returns the pooled bitmap to the pool if the image wasn't decoded into it, and lowers the
+     * density of a sampled bitmap so it is still displayed at the size of the full image.
+     */
+    private static Bitmap finishDecode(BitmapFactory.Options opts, Bitmap bitmap) {
+    
+        if (bitmap != opts.inBitmap)
+            returnInBitmap(opts);
+        
+        if ((bitmap != null) && (opts.inSampleSize > 1)) {
+        
+            final int density = bitmap.getDensity();
+            
+            if (density != Bitmap.DENSITY_NONE)
+                bitmap.setDensity(Math.max(1, ((density + (opts.inSampleSize / 2)) / opts.inSampleSize)));
+        
+        }
+        
+        return bitmap;
+    
+    }
+    
+    /** Returns the policy used when no policy is specified. */
+    public static BitmapDecodePolicy getDefault() {
+        return sDefault;
+    }
+    
+    public int getMaxHeight() {
+        return mMaxHeight;
+    }
+    
+    public int getMaxWidth() {
+        return mMaxWidth;
+    }
+    
+    public boolean isRgb565PreferredForOpaque() {
+        return mPreferRgb565;
+    }
+    
+    /**
+     * Whether the size or type of an image has to be known before decoding it.
+     *
+     * @param released Whether the bitmap will be put into the pool once it's not used anymore
+     */
+    private boolean needsBounds(boolean released) {
+        return ((getClass() != BitmapDecodePolicy.class) || (mMaxWidth != 0) || (mMaxHeight != 0) || mPreferRgb565
+            || (pool(released) != null));
+    }
+    
+    /**
+     * Returns the pool to decode into, or null if bitmaps can't be reused. Decoding into an
+     * empty pool only pays off for bitmaps that will be put into it afterwards.
+     *
+     * @param released Whether the bitmap will be put into the pool once it's not used anymore
+     */
+    private static BitmapPool pool(boolean released) {
+    
+        final BitmapPool pool = ((Build.VERSION.SDK_INT >= 19) ? BitmapPool.getDefault() : null);
+        return (((pool != null) && (released || !pool.isEmpty())) ? pool : null);
+    
+    }
+    
+    /**
+     * Sets up options holding the bounds of an image for decoding it with this policy.
+     *
+     * @param scale    The density scale the image will be decoded with
+     * @param sample   Whether the image may be sampled
+     * @param released Whether the bitmap will be put into the pool once it's not used anymore
+     * @return false if the bounds couldn't be read
+     */
+    private boolean prepare(BitmapFactory.Options opts, float scale, boolean sample, boolean released) {
+    
+        opts.inJustDecodeBounds = false;
+        
+        if ((opts.outWidth <= 0) || (opts.outHeight <= 0))
+            return false;
+        
+        if (sample)
+            opts.inSampleSize = computeSampleSize((int) ((opts.outWidth * scale) + 0.5f),
+                (int) ((opts.outHeight * scale) + 0.5f));
+        
+        final Bitmap.Config config = choosePreferredConfig(opts.outMimeType);
+        
+        if (config != null)
+            opts.inPreferredConfig = config;
+        
+        final BitmapPool pool = pool(released);
+        
+        if (pool != null) {
+        
+            // Assume the decoder rounds up, a larger bitmap can always be reused.
+            final int sampleSize = Math.max(opts.inSampleSize, 1);
+            final int height = (int) ((((opts.outHeight + sampleSize - 1) / sampleSize) * scale) + 0.5f);
+            final int width = (int) ((((opts.outWidth + sampleSize - 1) / sampleSize) * scale) + 0.5f);
+            
+            opts.inBitmap = pool.get(width * height * bytesPerPixel(opts.inPreferredConfig));
+            
+            // Only mutable bitmaps can go back into the pool.
+            if (released || (opts.inBitmap != null))
+                opts.inMutable = true;
+        
+        }
+        
+        return true;
+    
+    }
+    
+    /** Reads the rest of the specified stream. */
+    private static byte[] readFully(InputStream is) throws IOException {
+    
+        byte[] buffer = new byte[Math.max(is.available(), 16 * 1024)];
+        int length = 0;
+        
+        while (true) {
+        
+            final int read = is.read(buffer, length, (buffer.length - length));
+            
+            if (read < 0)
+                break;
+            
+            length += read;
+            
+            if (length == buffer.length)
+                buffer = Arrays.copyOf(buffer, (buffer.length * 2));
+        
+        }
+        
+        return ((length == buffer.length) ? buffer : Arrays.copyOf(buffer, length));
+    
+    }
+    
+    /**
+     * Puts the bitmap the options would have decoded into back into the pool.
+     *
+     * @return false if the options didn't hold a pooled bitmap
+     */
+    private static boolean returnInBitmap(BitmapFactory.Options opts) {
+    
+        final Bitmap bitmap = opts.inBitmap;
+        
+        if (bitmap == null)
+            return false;
+        
+        opts.inBitmap = null;
+        
+        final BitmapPool pool = BitmapPool.getDefault();
+        
+        if (pool != null)
+            pool.put(bitmap);
+        
+        return true;
+    
+    }
+    
+    /**
+     * Replaces the policy used when no policy is specified.
+     *
+     * @param policy The policy to use, or null to decode every bitmap at full size
+     */
+    public static void setDefault(BitmapDecodePolicy policy) {
+        sDefault = ((policy != null) ? policy : FULL_SIZE);
+    }
+
+}
\ No newline at end of file
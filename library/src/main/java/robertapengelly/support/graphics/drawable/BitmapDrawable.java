@@ -6,7 +6,6 @@ import  android.content.res.Resources;
 import  android.content.res.Resources.Theme;
 import  android.content.res.TypedArray;
 import  android.graphics.Bitmap;
-import  android.graphics.BitmapFactory;
 import  android.graphics.BitmapShader;
 import  android.graphics.Canvas;
 import  android.graphics.ColorFilter;
@@ -30,6 +29,8 @@ import  android.view.Gravity;
 
 import  java.io.InputStream;
 import  java.io.IOException;
+import  java.lang.ref.WeakReference;
+import  java.util.ArrayList;
 
 import  org.xmlpull.v1.XmlPullParser;
 import  org.xmlpull.v1.XmlPullParserException;
@@ -54,6 +55,9 @@ public class BitmapDrawable extends LollipopDrawable {
 
     private static final int DEFAULT_PAINT_FLAGS = (Paint.FILTER_BITMAP_FLAG | Paint.DITHER_FLAG);
     
+    /** Local matrix of shaders that aren't mirrored, never modified. */
+    private static final Matrix IDENTITY_MATRIX = new Matrix();
+    
     // Constants for {@link android.R.styleable#BitmapDrawable_tileMode}.
     private static final int TILE_MODE_UNDEFINED = -2;
     private static final int TILE_MODE_DISABLED = -1;
@@ -61,11 +65,17 @@ public class BitmapDrawable extends LollipopDrawable {
     private static final int TILE_MODE_REPEAT = 1;
     private static final int TILE_MODE_MIRROR = 2;
     
+    /** Copies of bitmaps scaled to the density they are drawn at, or null if disabled. */
+    private static volatile PrescaledBitmaps sPrescaledBitmaps;
+    
     private final Rect mDstRect = new Rect();   // #updateDstRectAndInsetsIfDirty() sets this
     
     private boolean mDstRectAndInsetsDirty = true;
     private boolean mMutated;
     
+    /** Whether the mirroring matrix was set on a shader not made by this drawable. */
+    private boolean mShaderMirrored;
+    
     // These are scaled to match the target density.
     private int mBitmapHeight;
     private int mBitmapWidth;
@@ -99,7 +109,15 @@ public class BitmapDrawable extends LollipopDrawable {
     
     /** Create a drawable by decoding a bitmap from the given input stream. */
     public BitmapDrawable(Resources res, InputStream is) {
-        this(new BitmapState(BitmapFactory.decodeStream(is)), null, null);
+        this(res, is, BitmapDecodePolicy.getDefault());
+    }
+    
+    /**
+     * Create a drawable by decoding a bitmap from the given input stream with the
+     * specified decode policy.
+     */
+    public BitmapDrawable(Resources res, InputStream is, BitmapDecodePolicy policy) {
+        this(new BitmapState(policy.decodeStream(is)), null, null);
         
         mBitmapState.mTargetDensity = mTargetDensity;
         
@@ -110,7 +128,15 @@ public class BitmapDrawable extends LollipopDrawable {
     
     /** Create a drawable by opening a given file path and decoding the bitmap. */
     public BitmapDrawable(Resources res, String filepath) {
-        this(new BitmapState(BitmapFactory.decodeFile(filepath)), null, null);
+        this(res, filepath, BitmapDecodePolicy.getDefault());
+    }
+    
+    /**
+     * Create a drawable by opening a given file path and decoding the bitmap with the
+     * specified decode policy.
+     */
+    public BitmapDrawable(Resources res, String filepath, BitmapDecodePolicy policy) {
+        this(new BitmapState(policy.decodeFile(filepath)), null, null);
         
         mBitmapState.mTargetDensity = mTargetDensity;
         
@@ -190,12 +216,18 @@ public class BitmapDrawable extends LollipopDrawable {
             final Shader.TileMode tmx = state.mTileModeX;
             final Shader.TileMode tmy = state.mTileModeY;
             
-            if ((tmx == null) && (tmy == null))
+            if ((tmx == null) && (tmy == null)) {
+            
                 paint.setShader(null);
-            else
-                paint.setShader(new BitmapShader(bitmap,
-                    ((tmx == null) ? Shader.TileMode.CLAMP : tmx),
-                        ((tmy == null) ? Shader.TileMode.CLAMP : tmy)));
+                state.mShader = null;
+            
+            } else {
+            
+                state.mShader = state.mShaders.obtain(bitmap, ((tmx == null) ? Shader.TileMode.CLAMP : tmx),
+                    ((tmy == null) ? Shader.TileMode.CLAMP : tmy));
+                paint.setShader(state.mShader.mShader);
+            
+            }
             
             state.mRebuildShader = false;
         
@@ -239,31 +271,38 @@ public class BitmapDrawable extends LollipopDrawable {
             
             }
             
-            canvas.drawBitmap(bitmap, null, mDstRect, paint);
+            final Bitmap prescaled = getPrescaledBitmap(bitmap);
+            
+            if (prescaled != null)
+                canvas.drawBitmap(prescaled, mDstRect.left, mDstRect.top, paint);
+            else
+                canvas.drawBitmap(bitmap, null, mDstRect, paint);
             
             if (needMirroring)
                 canvas.restore();
         
         } else {
         
-            if (needMirroring) {
+            final ShaderEntry entry = state.mShader;
+            
+            if ((entry != null) && (entry.mShader == shader))
+                updateShaderMatrix(entry, needMirroring, (mDstRect.right - mDstRect.left));
+            else if (needMirroring) {
             
                 // Mirror the bitmap
                 updateMirrorMatrix(mDstRect.right - mDstRect.left);
                 
                 shader.setLocalMatrix(mMirrorMatrix);
                 paint.setShader(shader);
+                
+                mShaderMirrored = true;
             
-            } else {
+            } else if (mShaderMirrored) {
             
-                if (mMirrorMatrix != null) {
-                
-                    mMirrorMatrix = null;
-                    
-                    shader.setLocalMatrix(new Matrix());
-                    paint.setShader(shader);
+                shader.setLocalMatrix(IDENTITY_MATRIX);
+                paint.setShader(shader);
                 
-                }
+                mShaderMirrored = false;
             
             }
             
@@ -378,6 +417,61 @@ public class BitmapDrawable extends LollipopDrawable {
         return mBitmapState.mPaint;
     }
     
+    /**
+     * Returns a copy of the bitmap scaled to the size it is drawn at if pre-scaling is
+     * enabled and the bitmap is drawn at the target density, null to draw the bitmap itself.
+     * Copies of mutable bitmaps are made again whenever their pixels change.
+     */
+    @TargetApi(12)
+    private Bitmap getPrescaledBitmap(Bitmap bitmap) {
+    
+        final PrescaledBitmaps cache = sPrescaledBitmaps;
+        
+        if (cache == null)
+            return null;
+        
+        final int height = (mDstRect.bottom - mDstRect.top);
+        final int width = (mDstRect.right - mDstRect.left);
+        
+        // Bitmaps stretched by their gravity or drawn at their own size gain nothing.
+        if ((width != mBitmapWidth) || (height != mBitmapHeight)
+            || ((width == bitmap.getWidth()) && (height == bitmap.getHeight())) || (width <= 0) || (height <= 0))
+            return null;
+        
+        // Changes to the pixels of a mutable bitmap can't be noticed without its generation id.
+        if (bitmap.isMutable() && (Build.VERSION.SDK_INT < 12))
+            return null;
+        
+        final BitmapState state = mBitmapState;
+        final boolean filter = state.mPaint.isFilterBitmap();
+        final int generation = ((Build.VERSION.SDK_INT >= 12) ? bitmap.getGenerationId() : 0);
+        
+        Bitmap prescaled = ((state.mPrescaled != null) ? state.mPrescaled.get() : null);
+        
+        if ((prescaled != null) && (state.mPrescaledSource == bitmap)) {
+        
+            if ((prescaled.getWidth() == width) && (prescaled.getHeight() == height)
+                && (state.mPrescaledFilter == filter) && (state.mPrescaledGeneration == generation))
+                return prescaled;
+            
+            // The old pixels are never drawn again.
+            if (state.mPrescaledGeneration != generation)
+                cache.remove(new PrescaledKey(bitmap, state.mPrescaledGeneration, prescaled.getWidth(),
+                    prescaled.getHeight(), state.mPrescaledFilter));
+        
+        }
+        
+        prescaled = cache.obtain(bitmap, generation, width, height, filter);
+        
+        state.mPrescaled = new WeakReference<>(prescaled);
+        state.mPrescaledFilter = filter;
+        state.mPrescaledGeneration = generation;
+        state.mPrescaledSource = bitmap;
+        
+        return prescaled;
+    
+    }
+    
     /**
      * Indicates the repeat behavior of this drawable on the X axis.
      *
@@ -516,35 +610,8 @@ public class BitmapDrawable extends LollipopDrawable {
     
     @Override
     protected void onBoundsChange(Rect bounds) {
-    
+        // The local matrix of the shader is brought up to date when drawing.
         mDstRectAndInsetsDirty = true;
-        
-        final Shader shader = mBitmapState.mPaint.getShader();
-        
-        if (shader != null) {
-        
-            if (needMirroring()) {
-            
-                updateMirrorMatrix(bounds.right - bounds.left);
-                
-                shader.setLocalMatrix(mMirrorMatrix);
-                mBitmapState.mPaint.setShader(shader);
-            
-            } else {
-            
-                if (mMirrorMatrix != null) {
-                
-                    mMirrorMatrix = null;
-                    
-                    shader.setLocalMatrix(new Matrix());
-                    mBitmapState.mPaint.setShader(shader);
-                
-                }
-            
-            }
-        
-        }
-    
     }
     
     @Override
@@ -626,6 +693,9 @@ public class BitmapDrawable extends LollipopDrawable {
         if (mBitmapState.mBitmap != bitmap) {
         
             mBitmapState.mBitmap = bitmap;
+            mBitmapState.mPrescaled = null;
+            mBitmapState.mPrescaledSource = null;
+            mBitmapState.mRebuildShader = true;
             
             computeBitmapSize();
             invalidateSelf();
@@ -701,6 +771,42 @@ public class BitmapDrawable extends LollipopDrawable {
     
     }
     
+    /**
+     * Enables drawing bitmaps whose density differs from the target density from a copy scaled
+     * once to the target density, so that drawing them is an unscaled copy instead of scaling
+     * them every frame. Only bitmaps drawn at their scaled size without tiling use a copy, a
+     * mutable bitmap gets a new copy when its pixels change and isn't copied before API 12. The
+     * copies are shared by all drawables, when they take more than the specified number of
+     * bytes the least recently used copies are dropped. Pre-scaling is disabled by default.
+     *
+     * @param maxBytes The maximum number of bytes of the scaled copies, or 0 to disable
+     *                 pre-scaling
+     */
+    public static void setPrescaleBudget(int maxBytes) {
+    
+        if (maxBytes < 0)
+            throw new IllegalArgumentException("maxBytes < 0");
+        
+        synchronized (BitmapDrawable.class) {
+        
+            final PrescaledBitmaps cache = sPrescaledBitmaps;
+            
+            if (maxBytes == 0) {
+            
+                sPrescaledBitmaps = null;
+                
+                if (cache != null)
+                    cache.evictAll();
+            
+            } else if (cache != null)
+                cache.resize(maxBytes);
+            else
+                sPrescaledBitmaps = new PrescaledBitmaps(maxBytes);
+        
+        }
+    
+    }
+    
     /**
      * Set the density at which this drawable will be rendered.
      *
@@ -873,6 +979,30 @@ public class BitmapDrawable extends LollipopDrawable {
     
     }
     
+    /**
+     * Sets the local matrix of the state's shader, unless it is already set to the needed
+     * matrix.
+     */
+    private void updateShaderMatrix(ShaderEntry entry, boolean mirror, float dx) {
+    
+        if ((entry.mMirrored == mirror) && (!mirror || (entry.mMirrorDx == dx)))
+            return;
+        
+        if (mirror) {
+        
+            updateMirrorMatrix(dx);
+            entry.mShader.setLocalMatrix(mMirrorMatrix);
+        
+        } else
+            entry.mShader.setLocalMatrix(IDENTITY_MATRIX);
+        
+        entry.mMirrorDx = dx;
+        entry.mMirrored = mirror;
+        
+        mBitmapState.mPaint.setShader(entry.mShader);
+    
+    }
+    
     private void updateMirrorMatrix(float dx) {
     
         if (mMirrorMatrix == null)
@@ -897,9 +1027,14 @@ public class BitmapDrawable extends LollipopDrawable {
         
         final int srcResId = a.getResourceId(R.styleable.BitmapDrawable_android_src, 0);
         
+        // A decoded bitmap has no mipmap hint, a bitmap taken from the cache may have been given
+        // one by another drawable.
+        boolean defMipMap = false;
+        
         if (srcResId != 0) {
         
-            final Bitmap bitmap = BitmapFactory.decodeResource(r, srcResId);
+            final Bitmap bitmap = BitmapDecodePolicy.getDefault().decodeCachedResource(r, srcResId, null, null, true,
+                a.getBoolean(R.styleable.BitmapDrawable_android_mipMap, defMipMap));
             
             if (bitmap == null)
                 throw new XmlPullParserException(a.getPositionDescription() + ": <bitmap> requires a valid src attribute");
@@ -910,10 +1045,8 @@ public class BitmapDrawable extends LollipopDrawable {
         
         state.mTargetDensity = r.getDisplayMetrics().densityDpi;
         
-        boolean defMipMap = false;
-        
         if (Build.VERSION.SDK_INT >= 17)
-            if (state.mBitmap != null)
+            if ((srcResId == 0) && (state.mBitmap != null))
                 defMipMap = state.mBitmap.hasMipMap();
         
         setMipMap(a.getBoolean(R.styleable.BitmapDrawable_android_mipMap, defMipMap));
@@ -993,9 +1126,19 @@ public class BitmapDrawable extends LollipopDrawable {
         boolean mAutoMirrored = false;
         int mChangingConfigurations;
         boolean mRebuildShader;
+        // Shader set on the paint, or null if the paint has no shader made by this drawable.
+        ShaderEntry mShader;
+        // Shaders made for this state's paint.
+        final ShaderCache mShaders;
+        // Copy of the bitmap scaled to the density it is drawn at, owned by sPrescaledBitmaps.
+        WeakReference<Bitmap> mPrescaled;
+        boolean mPrescaledFilter;
+        int mPrescaledGeneration;
+        Bitmap mPrescaledSource;
         BitmapState(Bitmap bitmap) {
             mBitmap = bitmap;
             mPaint = new Paint(DEFAULT_PAINT_FLAGS);
+            mShaders = new ShaderCache();
         }
         BitmapState(BitmapState bitmapState) {
             mBitmap = bitmapState.mBitmap;
@@ -1009,8 +1152,11 @@ public class BitmapDrawable extends LollipopDrawable {
             mTargetDensity = bitmapState.mTargetDensity;
             mBaseAlpha = bitmapState.mBaseAlpha;
             mPaint = new Paint(bitmapState.mPaint);
-            mRebuildShader = bitmapState.mRebuildShader;
             mAutoMirrored = bitmapState.mAutoMirrored;
+            // A shader holds the local matrix of the paint drawing it, so copies with their own
+            // paint make their own shaders.
+            mRebuildShader = ((mTileModeX != null) || (mTileModeY != null) || bitmapState.mRebuildShader);
+            mShaders = new ShaderCache();
         }
         @Override
         public boolean canApplyTheme() {
@@ -1036,5 +1182,153 @@ public class BitmapDrawable extends LollipopDrawable {
             return mChangingConfigurations;
         }
     }
+    
+    /** Bitmaps scaled to the density they are drawn at, bounded by their number of bytes. */
+    private static final class PrescaledBitmaps extends LruCache<PrescaledKey, Bitmap> {
+    
+        PrescaledBitmaps(int maxSize) {
+            super(maxSize);
+        }
+        
+        /** Returns the copy of the bitmap scaled to the specified size, creating it if needed. */
+        Bitmap obtain(Bitmap bitmap, int generation, int width, int height, boolean filter) {
+        
+            final PrescaledKey key = new PrescaledKey(bitmap, generation, width, height, filter);
+            Bitmap prescaled = get(key);
+            
+            if (prescaled == null) {
+            
+                prescaled = Bitmap.createScaledBitmap(bitmap, width, height, filter);
+                
+                // Drawn at its pixel size whatever the density of the canvas.
+                prescaled.setDensity(Bitmap.DENSITY_NONE);
+                
+                put(key, prescaled);
+            
+            }
+            
+            return prescaled;
+        
+        }
+        
+        @Override
+        protected int sizeOf(PrescaledKey key, Bitmap value) {
+            return (value.getRowBytes() * value.getHeight());
+        }
+    
+    }
+    
+    /**
+     * Identifies a scaled copy of a bitmap and the generation of its pixels. The bitmap is only
+     * weakly referenced, keys of collected bitmaps never match and are dropped as the cache
+     * evicts them.
+     */
+    private static final class PrescaledKey {
+    
+        private final boolean mFilter;
+        
+        private final int mGeneration;
+        private final int mHashCode;
+        private final int mHeight;
+        private final int mWidth;
+        
+        private final WeakReference<Bitmap> mBitmap;
+        
+        PrescaledKey(Bitmap bitmap, int generation, int width, int height, boolean filter) {
+        
+            mBitmap = new WeakReference<>(bitmap);
+            mFilter = filter;
+            mGeneration = generation;
+            mHeight = height;
+            mWidth = width;
+            
+            int hash = System.identityHashCode(bitmap);
+            hash = ((31 * hash) + generation);
+            hash = ((31 * hash) + width);
+            hash = ((31 * hash) + height);
+            
+            mHashCode = ((hash << 1) | (filter ? 1 : 0));
+        
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+        
+            if (!(o instanceof PrescaledKey))
+                return false;
+            
+            final PrescaledKey other = (PrescaledKey) o;
+            final Bitmap bitmap = mBitmap.get();
+            
+            return ((bitmap != null) && (bitmap == other.mBitmap.get()) && (mFilter == other.mFilter)
+                && (mGeneration == other.mGeneration) && (mHeight == other.mHeight) && (mWidth == other.mWidth));
+        
+        }
+        
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+    
+    }
+    
+    /**
+     * Shaders made for the paint of a bitmap state. A shader only depends on the bitmap and
+     * tile modes, so a drawable switching between tile modes reuses them. They aren't shared
+     * with mutated copies since the local matrix set on a shader applies to every paint
+     * drawing with it.
+     */
+    static final class ShaderCache {
+    
+        private static final int MAX_SHADERS = 4;
+        
+        private final ArrayList<ShaderEntry> mEntries = new ArrayList<>(MAX_SHADERS);
+        
+        /** Returns the shader for the specified bitmap and tile modes, creating it if needed. */
+        synchronized ShaderEntry obtain(Bitmap bitmap, Shader.TileMode tileModeX, Shader.TileMode tileModeY) {
+        
+            for (int i = (mEntries.size() - 1); i >= 0; --i) {
+            
+                final ShaderEntry entry = mEntries.get(i);
+                
+                if ((entry.mBitmap == bitmap) && (entry.mTileModeX == tileModeX) && (entry.mTileModeY == tileModeY))
+                    return entry;
+            
+            }
+            
+            // Drop the oldest shader, which may still hold a bitmap that was replaced.
+            if (mEntries.size() == MAX_SHADERS)
+                mEntries.remove(0);
+            
+            final ShaderEntry entry = new ShaderEntry(bitmap, tileModeX, tileModeY);
+            mEntries.add(entry);
+            
+            return entry;
+        
+        }
+    
+    }
+    
+    /** Shader tiling a bitmap and the local matrix last set on it. */
+    static final class ShaderEntry {
+    
+        final Bitmap mBitmap;
+        final BitmapShader mShader;
+        final Shader.TileMode mTileModeX;
+        final Shader.TileMode mTileModeY;
+        
+        boolean mMirrored;
+        float mMirrorDx;
+        
+        ShaderEntry(Bitmap bitmap, Shader.TileMode tileModeX, Shader.TileMode tileModeY) {
+        
+            mBitmap = bitmap;
+            mShader = new BitmapShader(bitmap, tileModeX, tileModeY);
+            mTileModeX = tileModeX;
+            mTileModeY = tileModeY;
+        
+        }
+    
+    }
 
 }
\ No newline at end of file
@@ -0,0 +1,202 @@
+package robertapengelly.support.graphics.drawable;
+
+import  android.annotation.TargetApi;
+import  android.graphics.Bitmap;
+import  android.os.Build;
+
+import  java.util.ArrayList;
+
+/**
+ * Pool of released bitmaps that new bitmaps are decoded into through
+ * {@link android.graphics.BitmapFactory.Options#inBitmap}, so decoding doesn't allocate.
+ *
+ * <p>Bitmaps are kept in size classes of powers of two bytes, a request is served from its
+ * own size class or the one above it, so a reused bitmap is never more than four times as
+ * large as needed. When the pool grows larger than its maximum size the bitmaps released
+ * first are dropped.</p>
+ *
+ * <p>Install a pool with {@link #setDefault(BitmapPool)} to have the bitmaps decoded by
+ * {@link BitmapDecodePolicy} taken from it, and the frames of streamed
+ * {@link AnimationDrawable}s returned to it. Reusing bitmaps of any size requires KitKat,
+ * on older releases the pool stays empty.</p>
+ */
+public class BitmapPool {
+
+    private static final int SIZE_CLASSES = 32;
+    
+    private static volatile BitmapPool sDefault;
+    
+    /** Bitmaps of each size class, a bitmap of n bytes is in class ceil(log2(n)). */
+    private final ArrayList<ArrayList<Bitmap>> mSizeClasses = new ArrayList<>(SIZE_CLASSES);
+    
+    /** All pooled bitmaps, the bitmap released first comes first. */
+    private final ArrayList<Bitmap> mReleaseOrder = new ArrayList<>();
+    
+    private final int mMaxSize;
+    private int mSize;
+    
+    private int mEvictionCount;
+    private int mHitCount;
+    private int mMissCount;
+    private int mPutCount;
+    
+    /** @param maxSize The maximum number of bytes of bitmaps kept in the pool */
+    public BitmapPool(int maxSize) {
+    
+        if (maxSize <= 0)
+            throw new IllegalArgumentException("maxSize <= 0");
+        
+        mMaxSize = maxSize;
+        
+        for (int i = 0; i < SIZE_CLASSES; ++i)
+            mSizeClasses.add(new ArrayList<Bitmap>());
+    
+    }
+    
+    /** Drops all bitmaps in the pool. */
+    public synchronized void clear() {
+        trimToSize(0);
+    }
+    
+    public synchronized final int evictionCount() {
+        return mEvictionCount;
+    }
+    
+    /**
+     * Takes a bitmap of at least the specified number of bytes from the pool, or returns null
+     * if there's none.
+     */
+    @TargetApi(19)
+    synchronized Bitmap get(int byteCount) {
+    
+        final int sizeClass = sizeClassOf(byteCount);
+        
+        for (int i = sizeClass; i < Math.min((sizeClass + 2), SIZE_CLASSES); ++i) {
+        
+            final ArrayList<Bitmap> bitmaps = mSizeClasses.get(i);
+            
+            for (int j = (bitmaps.size() - 1); j >= 0; --j) {
+            
+                final Bitmap bitmap = bitmaps.get(j);
+                
+                if (bitmap.getAllocationByteCount() < byteCount)
+                    continue;
+                
+                bitmaps.remove(j);
+                mReleaseOrder.remove(bitmap);
+                mSize -= bitmap.getAllocationByteCount();
+                
+                ++mHitCount;
+                return bitmap;
+            
+            }
+        
+        }
+        
+        ++mMissCount;
+        return null;
+    
+    }
+    
+    /** Returns the pool the bitmaps decoded by this library are taken from, or null if there's none. */
+    public static BitmapPool getDefault() {
+        return sDefault;
+    }
+    
+    /** Whether the pool holds no bitmaps, so decoding into it can't succeed. */
+    synchronized boolean isEmpty() {
+        return mReleaseOrder.isEmpty();
+    }
+    
+    public synchronized final int hitCount() {
+        return mHitCount;
+    }
+    
+    public synchronized final int maxSize() {
+        return mMaxSize;
+    }
+    
+    public synchronized final int missCount() {
+        return mMissCount;
+    }
+    
+    /**
+     * Adds a bitmap that isn't used anymore to the pool. The bitmap must not be drawn or
+     * modified after this.
+     *
+     * @return false if the bitmap can't be reused and was not added
+     */
+    @TargetApi(19)
+    public synchronized boolean put(Bitmap bitmap) {
+    
+        if ((Build.VERSION.SDK_INT < 19) || (bitmap == null) || bitmap.isRecycled() || !bitmap.isMutable())
+            return false;
+        
+        final int byteCount = bitmap.getAllocationByteCount();
+        
+        if ((byteCount <= 0) || (byteCount > mMaxSize) || mReleaseOrder.contains(bitmap))
+            return false;
+        
+        mSizeClasses.get(sizeClassOf(byteCount)).add(bitmap);
+        mReleaseOrder.add(bitmap);
+        mSize += byteCount;
+        
+        ++mPutCount;
+        
+        trimToSize(mMaxSize);
+        return true;
+    
+    }
+    
+    public synchronized final int putCount() {
+        return mPutCount;
+    }
+    
+    /**
+     * Sets the pool the bitmaps decoded by this library are taken from.
+     *
+     * @param pool The pool to use, or null to always allocate new bitmaps
+     */
+    public static void setDefault(BitmapPool pool) {
+        sDefault = pool;
+    }
+    
+    /** Returns the number of bytes of bitmaps in the pool. */
+    public synchronized final int size() {
+        return mSize;
+    }
+    
+    private static int sizeClassOf(int byteCount) {
+        return (32 - Integer.numberOfLeadingZeros(byteCount - 1));
+    }
+    
+    @Override
+    public synchronized String toString() {
+    
+        final int accesses = (mHitCount + mMissCount);
+        final int hitPercent = ((accesses != 0) ? ((100 * mHitCount) / accesses) : 0);
+        
+        return String.format("BitmapPool[maxSize=%d,size=%d,hits=%d,misses=%d,hitRate=%d%%]",
+            mMaxSize, mSize, mHitCount, mMissCount, hitPercent);
+    
+    }
+    
+    /** Drops the bitmaps released first until the pool holds at most the specified number of bytes. */
+    @TargetApi(19)
+    public synchronized void trimToSize(int maxSize) {
+    
+        while ((mSize > maxSize) && !mReleaseOrder.isEmpty()) {
+        
+            final Bitmap bitmap = mReleaseOrder.remove(0);
+            final int byteCount = bitmap.getAllocationByteCount();
+            
+            mSizeClasses.get(sizeClassOf(byteCount)).remove(bitmap);
+            mSize -= byteCount;
+            
+            ++mEvictionCount;
+        
+        }
+    
+    }
+
+}
\ No newline at end of file
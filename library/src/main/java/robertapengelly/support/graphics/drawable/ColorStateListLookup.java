@@ -0,0 +1,151 @@
+package robertapengelly.support.graphics.drawable;
+
+import  android.content.res.ColorStateList;
+
+import  java.lang.ref.WeakReference;
+import  java.lang.reflect.Field;
+import  java.util.WeakHashMap;
+
+/**
+ * Precompiled form of a {@link ColorStateList} that resolves the color for a state set
+ * with a few mask operations instead of scanning every state spec.
+ *
+ * <p>The state specs of the list are compiled into a {@link StateSetMatcher}, which maps
+ * each referenced state attribute to a bit. Lists that cannot be compiled fall back to
+ * {@link ColorStateList#getColorForState(int[], int)}.</p>
+ *
+ * <p>Instances are immutable and are shared by all drawables using the same list,
+ * see {@link #get(ColorStateList)}.</p>
+ */
+final class ColorStateListLookup {
+
+    // The values are weak as well since each lookup references its list.
+    private static final WeakHashMap<ColorStateList, WeakReference<ColorStateListLookup>> sLookups =
+        new WeakHashMap<>();
+    
+    private static boolean sFieldsFetched;
+    
+    private static Field sColorsField;
+    private static Field sStateSpecsField;
+    
+    /** Color for each spec, or null if the list could not be compiled. */
+    private final int[] mColors;
+    
+    private final ColorStateList mList;
+    private final StateSetMatcher mMatcher;
+    
+    private ColorStateListLookup(ColorStateList list) {
+    
+        mList = list;
+        
+        int[][] specs = null;
+        int[] colors = null;
+        
+        if (fetchFields()) {
+        
+            try {
+            
+                specs = (int[][]) sStateSpecsField.get(list);
+                colors = (int[]) sColorsField.get(list);
+            
+            } catch (Exception ignored) {}
+        
+        }
+        
+        StateSetMatcher matcher = null;
+        
+        if ((specs != null) && (colors != null) && (colors.length >= specs.length))
+            matcher = StateSetMatcher.compile(specs, specs.length);
+        
+        mColors = ((matcher != null) ? colors.clone() : null);
+        mMatcher = matcher;
+    
+    }
+    
+    private static boolean fetchFields() {
+    
+        if (!sFieldsFetched) {
+        
+            sFieldsFetched = true;
+            
+            try {
+            
+                final Field specs = ColorStateList.class.getDeclaredField("mStateSpecs");
+                specs.setAccessible(true);
+                
+                final Field colors = ColorStateList.class.getDeclaredField("mColors");
+                colors.setAccessible(true);
+                
+                sStateSpecsField = specs;
+                sColorsField = colors;
+            
+            } catch (Exception ignored) {}
+        
+        }
+        
+        return (sStateSpecsField != null);
+    
+    }
+    
+    /**
+     * Returns the shared lookup for the specified color state list, compiling it on first use.
+     *
+     * @param list The color state list, may be null
+     *
+     * @return The lookup for the list, or null if the list is null
+     */
+    static ColorStateListLookup get(ColorStateList list) {
+    
+        if (list == null)
+            return null;
+        
+        synchronized (sLookups) {
+        
+            final WeakReference<ColorStateListLookup> ref = sLookups.get(list);
+            ColorStateListLookup lookup = ((ref != null) ? ref.get() : null);
+            
+            if (lookup == null) {
+            
+                lookup = new ColorStateListLookup(list);
+                sLookups.put(list, new WeakReference<>(lookup));
+            
+            }
+            
+            return lookup;
+        
+        }
+    
+    }
+    
+    /**
+     * Returns the color associated with the given set of states, equivalent to
+     * {@link ColorStateList#getColorForState(int[], int)}.
+     *
+     * @param stateSet     An array of {@link android.R.attr} states
+     * @param defaultColor The color to return if there's no matching state spec
+     */
+    int getColorForState(int[] stateSet, int defaultColor) {
+    
+        if (mMatcher == null)
+            return mList.getColorForState(stateSet, defaultColor);
+        
+        final int index = mMatcher.indexOf(stateSet);
+        return ((index >= 0) ? mColors[index] : defaultColor);
+    
+    }
+    
+    /**
+     * Convenience for resolving a possibly null color state list.
+     *
+     * @see #getColorForState(int[], int)
+     */
+    static int getColorForState(ColorStateListLookup lookup, int[] stateSet, int defaultColor) {
+        return ((lookup != null) ? lookup.getColorForState(stateSet, defaultColor) : defaultColor);
+    }
+    
+    /** Returns the color state list this lookup was compiled from. */
+    ColorStateList getColorStateList() {
+        return mList;
+    }
+
+}
\ No newline at end of file
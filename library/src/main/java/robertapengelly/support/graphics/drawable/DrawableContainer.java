@@ -12,7 +12,8 @@ import  android.graphics.Rect;
 import  android.graphics.PorterDuff.Mode;
 import  android.graphics.drawable.Drawable;
 import  android.os.Build;
-import  android.os.SystemClock;
+import  android.os.Looper;
+import  android.os.MessageQueue;
 import  android.util.LayoutDirection;
 
 /**
@@ -42,6 +43,15 @@ public class DrawableContainer extends LollipopDrawable implements Drawable.Call
     private int mAlpha = 0xFF;
     private int mCurIndex = -1;
     
+    /**
+     * Version of the container-wide child properties (tint, color filter, dither,
+     * auto-mirroring and hotspot bounds), bumped whenever one of them changes.
+     */
+    private int mChildPropertiesVersion = 1;
+    
+    /** Value of mChildPropertiesVersion when the properties were last pushed into each child. */
+    private int[] mChildAppliedVersions;
+    
     private Drawable mCurrDrawable;
     private DrawableContainerState mDrawableContainerState;
     private Rect mHotspotBounds;
@@ -57,7 +67,7 @@ public class DrawableContainer extends LollipopDrawable implements Drawable.Call
         mHasAlpha = true;
         
         boolean animating = false;
-        final long now = SystemClock.uptimeMillis();
+        final long now = FrameScheduler.getDefault().currentFrameTimeMillis();
         
         if (mCurrDrawable != null) {
         
@@ -108,7 +118,7 @@ public class DrawableContainer extends LollipopDrawable implements Drawable.Call
             mExitAnimationEnd = 0;
         
         if (schedule && animating)
-            scheduleSelf(mAnimationRunnable, (now + 1000 / 60));
+            scheduleSelf(mAnimationRunnable, FrameScheduler.getDefault().nextFrameTimeMillis(now));
     
     }
     
@@ -122,6 +132,33 @@ public class DrawableContainer extends LollipopDrawable implements Drawable.Call
         return mDrawableContainerState.canApplyTheme();
     }
     
+    /**
+     * Creates the drawables of all children that haven't been created yet once the calling
+     * thread's message queue becomes idle, so that selecting a child for the first time, e.g.
+     * on the first press of a button, doesn't have to create it.
+     *
+     * <p>Must be called on a thread with a {@link Looper}, usually the UI thread. To create
+     * the children on a background thread instead, call
+     * {@link DrawableContainerState#createAllFutures()} from that thread.</p>
+     */
+    public void createAllFuturesWhenIdle() {
+    
+        final DrawableContainerState state = mDrawableContainerState;
+        
+        Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+        
+            @Override
+            public boolean queueIdle() {
+            
+                state.createAllFutures();
+                return false;
+            
+            }
+        
+        });
+    
+    }
+    
     @Override
     public void draw(Canvas canvas) {
     
@@ -347,6 +384,58 @@ public class DrawableContainer extends LollipopDrawable implements Drawable.Call
     
     }
     
+    /**
+     * Records that the container-wide child properties have changed. The current child has
+     * already received the change, so it stays up to date if it was before.
+     */
+    private void invalidateChildProperties() {
+    
+        final boolean currentUpToDate = !needsChildProperties(mCurIndex);
+        ++mChildPropertiesVersion;
+        
+        if (currentUpToDate)
+            mChildAppliedVersions[mCurIndex] = mChildPropertiesVersion;
+    
+    }
+    
+    /**
+     * Marks the container-wide child properties as pushed into the child at the specified
+     * index.
+     *
+     * @return true if the child didn't have the current properties yet
+     */
+    private boolean markChildPropertiesApplied(int index) {
+    
+        if (!needsChildProperties(index))
+            return false;
+        
+        final int[] versions = mChildAppliedVersions;
+        
+        if ((versions == null) || (index >= versions.length)) {
+        
+            final int[] grown = new int[Math.max(index + 1, mDrawableContainerState.mNumChildren)];
+            
+            if (versions != null)
+                System.arraycopy(versions, 0, grown, 0, versions.length);
+            
+            mChildAppliedVersions = grown;
+        
+        }
+        
+        mChildAppliedVersions[index] = mChildPropertiesVersion;
+        return true;
+    
+    }
+    
+    private boolean needsChildProperties(int index) {
+    
+        final int[] versions = mChildAppliedVersions;
+        
+        return ((index < 0) || (versions == null) || (index >= versions.length)
+            || (versions[index] != mChildPropertiesVersion));
+    
+    }
+    
     private boolean needsMirroring() {
     
         if (isAutoMirrored())
@@ -405,7 +494,7 @@ public class DrawableContainer extends LollipopDrawable implements Drawable.Call
         if (idx == mCurIndex)
             return false;
         
-        final long now = SystemClock.uptimeMillis();
+        final long now = FrameScheduler.getDefault().currentFrameTimeMillis();
         
         if (mDrawableContainerState.mExitFadeDuration > 0) {
         
@@ -436,35 +525,45 @@ public class DrawableContainer extends LollipopDrawable implements Drawable.Call
             
             if (d != null) {
             
-                d.mutate();
+                // Tint, color filter, dither, auto-mirroring and hotspot bounds only need to
+                // be pushed if they changed since this child was last selected. The remaining
+                // setters return early by themselves when nothing changed.
+                final boolean pushProperties = markChildPropertiesApplied(idx);
+                
+                if (pushProperties)
+                    d.mutate();
                 
                 if (mDrawableContainerState.mEnterFadeDuration > 0)
                     mEnterAnimationEnd = now + mDrawableContainerState.mEnterFadeDuration;
                 else if (mHasAlpha)
                     d.setAlpha(mAlpha);
                 
-                if (mDrawableContainerState.mHasColorFilter)
-                    // Color filter always overrides tint.
-                    d.setColorFilter(mDrawableContainerState.mColorFilter);
-                else {
+                if (pushProperties) {
                 
-                    if (mDrawableContainerState.mHasTintList) {
-                    
-                        if (d instanceof LollipopDrawable)
-                            //noinspection RedundantCast
-                            ((LollipopDrawable) d).setTintList(mDrawableContainerState.mTintList);
-                        else if (Build.VERSION.SDK_INT >= 21)
-                            d.setTintList(mDrawableContainerState.mTintList);
-                    
-                    }
-                    
-                    if (mDrawableContainerState.mHasTintMode) {
+                    if (mDrawableContainerState.mHasColorFilter)
+                        // Color filter always overrides tint.
+                        d.setColorFilter(mDrawableContainerState.mColorFilter);
+                    else {
                     
-                        if (d instanceof LollipopDrawable)
-                            //noinspection RedundantCast
-                            ((LollipopDrawable) d).setTintMode(mDrawableContainerState.mTintMode);
-                        else if (Build.VERSION.SDK_INT >= 21)
-                            d.setTintMode(mDrawableContainerState.mTintMode);
+                        if (mDrawableContainerState.mHasTintList) {
+                        
+                            if (d instanceof LollipopDrawable)
+                                //noinspection RedundantCast
+                                ((LollipopDrawable) d).setTintList(mDrawableContainerState.mTintList);
+                            else if (Build.VERSION.SDK_INT >= 21)
+                                d.setTintList(mDrawableContainerState.mTintList);
+                        
+                        }
+                        
+                        if (mDrawableContainerState.mHasTintMode) {
+                        
+                            if (d instanceof LollipopDrawable)
+                                //noinspection RedundantCast
+                                ((LollipopDrawable) d).setTintMode(mDrawableContainerState.mTintMode);
+                            else if (Build.VERSION.SDK_INT >= 21)
+                                d.setTintMode(mDrawableContainerState.mTintMode);
+                        
+                        }
                     
                     }
                 
@@ -475,18 +574,22 @@ public class DrawableContainer extends LollipopDrawable implements Drawable.Call
                 d.setState(getState());
                 d.setVisible(isVisible(), true);
                 
-                //noinspection deprecation
-                d.setDither(mDrawableContainerState.mDither);
-                
-                if (Build.VERSION.SDK_INT >= 19)
-                    d.setAutoMirrored(mDrawableContainerState.mAutoMirrored);
-                
                 if (Build.VERSION.SDK_INT >= 23)
                     d.setLayoutDirection(getLayoutDirection());
                 
+                if (pushProperties) {
+                
+                    //noinspection deprecation
+                    d.setDither(mDrawableContainerState.mDither);
+                    
+                    if (Build.VERSION.SDK_INT >= 19)
+                        d.setAutoMirrored(mDrawableContainerState.mAutoMirrored);
+                
+                }
+                
                 final Rect hotspotBounds = mHotspotBounds;
                 
-                if (hotspotBounds != null) {
+                if (pushProperties && (hotspotBounds != null)) {
                 
                     if (d instanceof LollipopDrawable)
                         //noinspection RedundantCast
@@ -566,6 +669,7 @@ public class DrawableContainer extends LollipopDrawable implements Drawable.Call
         if (mDrawableContainerState.mAutoMirrored != mirrored) {
         
             mDrawableContainerState.mAutoMirrored = mirrored;
+            invalidateChildProperties();
             
             if (mCurrDrawable != null)
                 mCurrDrawable.mutate().setAutoMirrored(mDrawableContainerState.mAutoMirrored);
@@ -582,6 +686,7 @@ public class DrawableContainer extends LollipopDrawable implements Drawable.Call
         if (mDrawableContainerState.mColorFilter != cf) {
         
             mDrawableContainerState.mColorFilter = cf;
+            invalidateChildProperties();
             
             if (mCurrDrawable != null)
                 mCurrDrawable.mutate().setColorFilter(cf);
@@ -591,7 +696,10 @@ public class DrawableContainer extends LollipopDrawable implements Drawable.Call
     }
     
     protected void setConstantState(DrawableContainerState state) {
+    
         mDrawableContainerState = state;
+        mChildAppliedVersions = null;
+    
     }
     
     public void setCurrentIndex(int index) {
@@ -605,6 +713,7 @@ public class DrawableContainer extends LollipopDrawable implements Drawable.Call
         if (mDrawableContainerState.mDither != dither) {
         
             mDrawableContainerState.mDither = dither;
+            invalidateChildProperties();
             
             if (mCurrDrawable != null)
                 mCurrDrawable.mutate().setDither(mDrawableContainerState.mDither);
@@ -651,6 +760,10 @@ public class DrawableContainer extends LollipopDrawable implements Drawable.Call
     @Override
     public void setHotspotBounds(int left, int top, int right, int bottom) {
     
+        if ((mHotspotBounds == null) || (mHotspotBounds.left != left) || (mHotspotBounds.top != top)
+            || (mHotspotBounds.right != right) || (mHotspotBounds.bottom != bottom))
+            invalidateChildProperties();
+        
         if (mHotspotBounds == null)
             mHotspotBounds = new Rect(left, top, right, bottom);
         else
@@ -671,6 +784,9 @@ public class DrawableContainer extends LollipopDrawable implements Drawable.Call
     @Override
     public void setTintList(ColorStateList tint) {
     
+        if (!mDrawableContainerState.mHasTintList || (mDrawableContainerState.mTintList != tint))
+            invalidateChildProperties();
+        
         mDrawableContainerState.mHasTintList = true;
         
         if (mDrawableContainerState.mTintList != tint) {
@@ -694,6 +810,9 @@ public class DrawableContainer extends LollipopDrawable implements Drawable.Call
     @Override
     public void setTintMode(Mode tintMode) {
     
+        if (!mDrawableContainerState.mHasTintMode || (mDrawableContainerState.mTintMode != tintMode))
+            invalidateChildProperties();
+        
         mDrawableContainerState.mHasTintMode = true;
         
         if (mDrawableContainerState.mTintMode != tintMode) {
@@ -822,24 +941,29 @@ public class DrawableContainer extends LollipopDrawable implements Drawable.Call
                 mStateful = orig.isStateful();
                 
                 // Postpone cloning children and futures until we're absolutely
-                // sure that we're done computing values for the original state.
-                final Drawable[] origDr = orig.mDrawables;
-                
-                mDrawables = new Drawable[origDr.length];
-                mNumChildren = orig.mNumChildren;
+                // sure that we're done computing values for the original state. The children
+                // may be installed by createAllFutures() on another thread meanwhile.
+                synchronized (orig) {
                 
-                final SparseArrayCompat<ConstantStateFuture> origDf = orig.mDrawableFutures;
-                
-                if (origDf != null)
-                    mDrawableFutures = origDf.clone();
-                else
-                    mDrawableFutures = new SparseArrayCompat<> (mNumChildren);
-                
-                final int N = mNumChildren;
+                    final Drawable[] origDr = orig.mDrawables;
+                    
+                    mDrawables = new Drawable[origDr.length];
+                    mNumChildren = orig.mNumChildren;
+                    
+                    final SparseArrayCompat<ConstantStateFuture> origDf = orig.mDrawableFutures;
+                    
+                    if (origDf != null)
+                        mDrawableFutures = origDf.clone();
+                    else
+                        mDrawableFutures = new SparseArrayCompat<> (mNumChildren);
+                    
+                    final int N = mNumChildren;
+                    
+                    for (int i = 0; i < N; ++i)
+                        if (origDr[i] != null)
+                            mDrawableFutures.put(i, new ConstantStateFuture(origDr[i]));
                 
-                for (int i = 0; i < N; ++i)
-                    if (origDr[i] != null)
-                        mDrawableFutures.put(i, new ConstantStateFuture(origDr[i]));
+                }
             
             } else {
             
@@ -850,7 +974,7 @@ public class DrawableContainer extends LollipopDrawable implements Drawable.Call
         
         }
         
-        public final int addChild(Drawable dr) {
+        public final synchronized int addChild(Drawable dr) {
         
             final int pos = mNumChildren;
             
@@ -873,7 +997,7 @@ public class DrawableContainer extends LollipopDrawable implements Drawable.Call
         
         }
         
-        final void applyTheme(Theme theme) {
+        final synchronized void applyTheme(Theme theme) {
         
             // No need to call createAllFutures, since future drawables will
             // apply the theme when they are prepared.
@@ -902,7 +1026,7 @@ public class DrawableContainer extends LollipopDrawable implements Drawable.Call
         }
         
         @Override
-        public boolean canApplyTheme() {
+        public synchronized boolean canApplyTheme() {
         
             final Drawable[] drawables = mDrawables;
             final int N = mNumChildren;
@@ -963,7 +1087,7 @@ public class DrawableContainer extends LollipopDrawable implements Drawable.Call
         
         }
         
-        protected void computeConstantSize() {
+        protected synchronized void computeConstantSize() {
         
             mComputedConstantSize = true;
             createAllFutures();
@@ -1001,26 +1125,66 @@ public class DrawableContainer extends LollipopDrawable implements Drawable.Call
         
         }
         
-        private final void createAllFutures() {
+        /**
+         * Creates the drawables of all children that are still pending, so that later calls to
+         * {@link #getChild(int)} don't have to create them.
+         *
+         * <p>This may be called from a background thread. Each drawable is created outside of
+         * this state's lock and published under it, so the UI thread only waits for the lock
+         * while a child is being installed. All other reads and writes of the children hold
+         * the same lock.</p>
+         */
+        public final void createAllFutures() {
         
-            if (mDrawableFutures != null) {
+            while (true) {
             
-                final int futureCount = mDrawableFutures.size();
+                final ConstantStateFuture future;
+                final int index;
+                final Theme theme;
                 
-                for (int keyIndex = 0; keyIndex < futureCount; keyIndex++) {
+                synchronized (this) {
                 
-                    final int index = mDrawableFutures.keyAt(keyIndex);
-                    mDrawables[index] = mDrawableFutures.valueAt(keyIndex).get(this);
+                    if ((mDrawableFutures == null) || (mDrawableFutures.size() == 0)) {
+                    
+                        mDrawableFutures = null;
+                        return;
+                    
+                    }
+                    
+                    future = mDrawableFutures.valueAt(0);
+                    index = mDrawableFutures.keyAt(0);
+                    theme = mTheme;
                 
                 }
                 
-                mDrawableFutures = null;
+                final Drawable prepared = future.get(this);
+                
+                synchronized (this) {
+                
+                    // Only install the drawable if no other thread did so in the meantime
+                    // and the theme it was created with is still current.
+                    final int keyIndex = ((mDrawableFutures != null) ? mDrawableFutures.indexOfKey(index) : -1);
+                    
+                    if ((keyIndex < 0) || (mDrawableFutures.valueAt(keyIndex) != future) || (theme != mTheme))
+                        continue;
+                    
+                    // The state may have been mutated or changed direction while creating it.
+                    if (mMutated)
+                        prepared.mutate();
+                    
+                    if (Build.VERSION.SDK_INT >= 23)
+                        prepared.setLayoutDirection(mLayoutDirection);
+                    
+                    mDrawables[index] = prepared;
+                    mDrawableFutures.removeAt(keyIndex);
+                
+                }
             
             }
         
         }
         
-        final int getCapacity() {
+        final synchronized int getCapacity() {
             return mDrawables.length;
         }
         
@@ -1029,7 +1193,7 @@ public class DrawableContainer extends LollipopDrawable implements Drawable.Call
             return (mChangingConfigurations | mChildrenChangingConfigurations);
         }
         
-        public final Drawable getChild(int index) {
+        public final synchronized Drawable getChild(int index) {
         
             final Drawable result = mDrawables[index];
             
@@ -1058,7 +1222,7 @@ public class DrawableContainer extends LollipopDrawable implements Drawable.Call
         
         }
         
-        public final int getChildCount() {
+        public final synchronized int getChildCount() {
             return mNumChildren;
         }
         
@@ -1089,7 +1253,7 @@ public class DrawableContainer extends LollipopDrawable implements Drawable.Call
         
         }
         
-        public final Rect getConstantPadding() {
+        public final synchronized Rect getConstantPadding() {
         
             if (mVariablePadding)
                 return null;
@@ -1150,7 +1314,7 @@ public class DrawableContainer extends LollipopDrawable implements Drawable.Call
             return mExitFadeDuration;
         }
         
-        public final int getOpacity() {
+        public final synchronized int getOpacity() {
         
             if (mCheckedOpacity)
                 return mOpacity;
@@ -1171,7 +1335,7 @@ public class DrawableContainer extends LollipopDrawable implements Drawable.Call
         
         }
         
-        public void growArray(int oldSize, int newSize) {
+        public synchronized void growArray(int oldSize, int newSize) {
         
             Drawable[] newDrawables = new Drawable[newSize];
             System.arraycopy(mDrawables, 0, newDrawables, 0, oldSize);
@@ -1184,7 +1348,7 @@ public class DrawableContainer extends LollipopDrawable implements Drawable.Call
             return mConstantSize;
         }
         
-        public final boolean isStateful() {
+        public final synchronized boolean isStateful() {
         
             if (mCheckedStateful)
                 return mStateful;
@@ -1211,7 +1375,7 @@ public class DrawableContainer extends LollipopDrawable implements Drawable.Call
         
         }
         
-        final void mutate() {
+        final synchronized void mutate() {
         
             // No need to call createAllFutures, since future drawables will
             // mutate when they are prepared.
@@ -1238,7 +1402,7 @@ public class DrawableContainer extends LollipopDrawable implements Drawable.Call
             mExitFadeDuration = duration;
         }
         
-        final void setLayoutDirection(int layoutDirection) {
+        final synchronized void setLayoutDirection(int layoutDirection) {
         
             // No need to call createAllFutures, since future drawables will
             // change layout direction when they are prepared.
@@ -1,10 +1,15 @@
 package robertapengelly.support.graphics.drawable;
 
+import  android.annotation.TargetApi;
 import  android.graphics.PorterDuff;
 import  android.graphics.PorterDuffColorFilter;
 import  android.os.Build;
+import  android.os.Looper;
+import  android.util.DisplayMetrics;
 import  android.util.Log;
+import  android.view.Choreographer;
 
+import  java.lang.reflect.Field;
 import  java.lang.reflect.Method;
 
 class DrawableReflectiveUtils {
@@ -14,8 +19,111 @@ class DrawableReflectiveUtils {
     
     private static SimpleArrayMap<String, Method> sCachedMethods = new SimpleArrayMap<>();
     
+    private static volatile boolean sDensityFieldsFetched;
+    
+    /** Density of the device from DisplayMetrics.DENSITY_DEVICE, or 0 if it couldn't be read. */
+    private static int sDeviceDensity;
+    
+    private static Field sNoncompatDensityDpiField;
+    
+    private static volatile boolean sFrameIntervalMethodFetched;
+    
+    private static Method sFrameIntervalMethod;
+    
     final static Class[] INT_ARG = {int.class};
     
+    private static synchronized void fetchDensityFields() {
+    
+        if (sDensityFieldsFetched)
+            return;
+        
+        try {
+        
+            final Field field = DisplayMetrics.class.getDeclaredField("noncompatDensityDpi");
+            field.setAccessible(true);
+            
+            sNoncompatDensityDpiField = field;
+        
+        } catch (Exception ex) {
+        
+            try {
+            
+                final Field field = DisplayMetrics.class.getDeclaredField("DENSITY_DEVICE");
+                field.setAccessible(true);
+                
+                sDeviceDensity = field.getInt(null);
+            
+            } catch (Exception ignored) {}
+        
+        }
+        
+        sDensityFieldsFetched = true;
+    
+    }
+    
+    private static synchronized void fetchFrameIntervalMethod() {
+    
+        if (sFrameIntervalMethodFetched)
+            return;
+        
+        try {
+        
+            final Method method = Choreographer.class.getDeclaredMethod("getFrameIntervalNanos");
+            method.setAccessible(true);
+            
+            sFrameIntervalMethod = method;
+        
+        } catch (Exception ignored) {}
+        
+        sFrameIntervalMethodFetched = true;
+    
+    }
+    
+    /**
+     * Returns the interval between the vsyncs of the display the calling thread's
+     * {@link Choreographer} draws to, or 0 if it couldn't be read. The hidden method returning
+     * it is looked up once per process.
+     */
+    @TargetApi(16)
+    static long getFrameIntervalNanos() {
+    
+        if (!sFrameIntervalMethodFetched)
+            fetchFrameIntervalMethod();
+        
+        if ((sFrameIntervalMethod == null) || (Looper.myLooper() == null))
+            return 0;
+        
+        try {
+            return (Long) sFrameIntervalMethod.invoke(Choreographer.getInstance());
+        } catch (Exception ignored) {
+            return 0;
+        }
+    
+    }
+    
+    /**
+     * Returns the density of the screen without compatibility mode scaling, for
+     * {@link android.graphics.BitmapFactory.Options#inScreenDensity}. The hidden fields holding
+     * it are looked up once per process, if they can't be read the density of the metrics is
+     * returned.
+     */
+    static int getScreenDensity(DisplayMetrics metrics) {
+    
+        if (!sDensityFieldsFetched)
+            fetchDensityFields();
+        
+        if (sNoncompatDensityDpiField != null) {
+        
+            try {
+                return sNoncompatDensityDpiField.getInt(metrics);
+            } catch (Exception ignored) {}
+        
+        }
+        
+        return ((sDeviceDensity != 0) ? sDeviceDensity : metrics.densityDpi);
+    
+    }
+    
     static PorterDuffColorFilter setColor(PorterDuffColorFilter cf, int color, PorterDuff.Mode mode) {
     
         if (Build.VERSION.SDK_INT < 21) {
@@ -0,0 +1,136 @@
+package robertapengelly.support.graphics.drawable;
+
+import  android.annotation.TargetApi;
+import  android.os.Build;
+import  android.view.animation.AnimationUtils;
+
+/**
+ * Time source used by the animated drawables in this library to compute their frames and to
+ * decide when the next frame should be scheduled.
+ *
+ * <p>The default scheduler uses the animation clock of the platform, which is aligned to the
+ * display's vsync on newer releases, and schedules the next frame one vsync interval of the
+ * display later. Views post drawable callbacks to the {@link android.view.Choreographer}
+ * since Jelly Bean, which runs them on the first vsync after that time. Before Jelly Bean
+ * frames are {@value #DEFAULT_FRAME_DELAY} ms apart. Tests can install
+ * a {@link Manual} scheduler with {@link #setDefault(FrameScheduler)} to drive animations
+ * deterministically.</p>
+ */
+public abstract class FrameScheduler {
+
+    /** Frame interval used when the display's vsync interval isn't known. */
+    static final long DEFAULT_FRAME_DELAY = (1000 / 60);
+    
+    private static final FrameScheduler PLATFORM = new Platform();
+    
+    private static volatile FrameScheduler sDefault = PLATFORM;
+    
+    /**
+     * Returns the time of the frame currently being computed, in the
+     * {@link android.os.SystemClock#uptimeMillis()} time base.
+     */
+    public abstract long currentFrameTimeMillis();
+    
+    /** Returns the scheduler used by all drawables in this library. */
+    public static FrameScheduler getDefault() {
+        return sDefault;
+    }
+    
+    /**
+     * Returns the time to schedule a callback for so that it runs on the first frame after
+     * the specified frame time.
+     *
+     * @param frameTimeMillis The current frame time, as returned by {@link #currentFrameTimeMillis()}
+     */
+    public abstract long nextFrameTimeMillis(long frameTimeMillis);
+    
+    /**
+     * Replaces the scheduler used by all drawables in this library.
+     *
+     * @param scheduler The scheduler to use, or null to restore the platform scheduler
+     */
+    public static void setDefault(FrameScheduler scheduler) {
+        sDefault = ((scheduler != null) ? scheduler : PLATFORM);
+    }
+    
+    /**
+     * Scheduler with a clock that only moves when told to, for tests. Every frame is exactly
+     * {@link #getFrameIntervalMillis()} long.
+     */
+    public static class Manual extends FrameScheduler {
+    
+        private final long mFrameIntervalMillis;
+        
+        private long mTimeMillis;
+        
+        public Manual() {
+            this(DEFAULT_FRAME_DELAY);
+        }
+        
+        public Manual(long frameIntervalMillis) {
+        
+            if (frameIntervalMillis <= 0)
+                throw new IllegalArgumentException("Frame interval must be positive");
+            
+            mFrameIntervalMillis = frameIntervalMillis;
+        
+        }
+        
+        /** Advances the clock by the specified number of frames. */
+        public synchronized void advanceFrames(int frames) {
+            mTimeMillis += (frames * mFrameIntervalMillis);
+        }
+        
+        @Override
+        public synchronized long currentFrameTimeMillis() {
+            return mTimeMillis;
+        }
+        
+        public long getFrameIntervalMillis() {
+            return mFrameIntervalMillis;
+        }
+        
+        @Override
+        public long nextFrameTimeMillis(long frameTimeMillis) {
+            return (frameTimeMillis + mFrameIntervalMillis);
+        }
+        
+        /** Moves the clock to the specified time. */
+        public synchronized void setTimeMillis(long timeMillis) {
+            mTimeMillis = timeMillis;
+        }
+    
+    }
+    
+    private static final class Platform extends FrameScheduler {
+    
+        @Override
+        public long currentFrameTimeMillis() {
+            // Returns the vsync time of the frame being drawn while the Choreographer is
+            // running a frame, the current uptime otherwise.
+            return AnimationUtils.currentAnimationTimeMillis();
+        }
+        
+        @TargetApi(16)
+        @Override
+        public long nextFrameTimeMillis(long frameTimeMillis) {
+        
+            // Callbacks that aren't posted through the Choreographer run at exactly this time,
+            // so it must lie in the future or the animation would reschedule itself at once.
+            // Rounding the interval down keeps the Choreographer from skipping a vsync.
+            if (Build.VERSION.SDK_INT >= 16) {
+            
+                final long intervalMillis = (DrawableReflectiveUtils.getFrameIntervalNanos() / 1000000L);
+                
+                if (intervalMillis > 0)
+                    return (frameTimeMillis + intervalMillis);
+            
+            }
+            
+            return (frameTimeMillis + DEFAULT_FRAME_DELAY);
+        
+        }
+    
+    }
+
+}
\ No newline at end of file
@@ -73,8 +73,10 @@ public class GradientDrawable extends LollipopDrawable {
     private static final float DEFAULT_INNER_RADIUS_RATIO = 3.0f;
     private static final float DEFAULT_THICKNESS_RATIO = 9.0f;
     
+    /** Dash effects are immutable, so they are shared by all drawables with the same dashes. */
+    private static final DashPathEffectLruCache DASH_PATH_EFFECT_CACHE = new DashPathEffectLruCache(16);
+    
     private final Paint mFillPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-    private final Path mPath = new Path();
     private final RectF mRect = new RectF();
     
     private boolean mGradientIsDirty;   // internal state
@@ -90,6 +92,7 @@ public class GradientDrawable extends LollipopDrawable {
     private GradientState mGradientState;
     private Paint mLayerPaint;    // internal, used if we use saveLayer()
     private Paint mStrokePaint;   // optional, set by the caller
+    private Path mPath;           // created on demand, only used for per-corner radii
     private Path mRingPath;
     private Rect mPadding;
     
@@ -128,7 +131,7 @@ public class GradientDrawable extends LollipopDrawable {
      * of colors for the gradient.
      */
     public GradientDrawable(Orientation orientation, int[] colors) {
-        this(new GradientState(orientation, colors), null);
+        this(new GradientState(orientation, ((colors != null) ? colors.clone() : null)), null);
     }
     
     @Override
@@ -186,11 +189,16 @@ public class GradientDrawable extends LollipopDrawable {
     
         final GradientState st = mGradientState;
         
-        if (mPathIsDirty) {
+        // A ring clears the dirty flag too, so the path may not have been made yet.
+        if (mPathIsDirty || (mPath == null)) {
         
             ensureValidRect();
             
-            mPath.reset();
+            if (mPath == null)
+                mPath = new Path();
+            else
+                mPath.reset();
+            
             mPath.addRoundRect(mRect, st.mRadiusArray, Path.Direction.CW);
             
             mPathIsDirty = false;
@@ -280,6 +288,38 @@ public class GradientDrawable extends LollipopDrawable {
             // nothing to draw
             return;
         
+        drawInternal(canvas, null);
+    
+    }
+    
+    /**
+     * Draws this drawable once for each of the specified bounds, producing the same result
+     * as setting each of them as the bounds in turn and calling {@link #draw(Canvas)}, but
+     * without changing the bounds of this drawable.
+     *
+     * <p>The paints are set up once for all instances. Instances with the same size share
+     * the computed path and gradient and are only translated, so this is cheapest when
+     * drawing many equally sized backgrounds that share a constant state, e.g. list rows.</p>
+     *
+     * @param canvas      The canvas to draw into
+     * @param boundsArray The bounds of each instance to draw
+     */
+    public void drawInstances(Canvas canvas, Rect[] boundsArray) {
+    
+        if ((boundsArray == null) || (boundsArray.length == 0))
+            return;
+        
+        ensureValidRect();
+        drawInternal(canvas, boundsArray);
+    
+    }
+    
+    /**
+     * Draws the shape for the current bounds if boundsArray is null, or once for each of
+     * the bounds in boundsArray otherwise.
+     */
+    private void drawInternal(Canvas canvas, Rect[] boundsArray) {
+    
         // remember the alpha values, in case we temporarily overwrite them
         // when we modulate them with mAlpha
         final int prevFillAlpha = mFillPaint.getAlpha();
@@ -319,10 +359,6 @@ public class GradientDrawable extends LollipopDrawable {
             mLayerPaint.setColorFilter(mColorFilter);
             mLayerPaint.setDither(st.mDither);
             
-            float rad = mStrokePaint.getStrokeWidth();
-            canvas.saveLayer((mRect.left - rad), (mRect.top - rad), (mRect.right + rad), (mRect.bottom + rad),
-                mLayerPaint, Canvas.HAS_ALPHA_LAYER_SAVE_FLAG);
-            
             // don't perform the filter in our individual paints
             // since the layer will do it for us
             mFillPaint.setColorFilter(null);
@@ -350,6 +386,87 @@ public class GradientDrawable extends LollipopDrawable {
         
         }
         
+        if (boundsArray == null)
+            drawShape(canvas, useLayer, haveStroke);
+        else {
+        
+            // The bounds the current path and gradient were computed for.
+            final Rect bounds = getBounds();
+            
+            boolean geometryChanged = false;
+            int geometryLeft = bounds.left;
+            int geometryTop = bounds.top;
+            int geometryWidth = bounds.width();
+            int geometryHeight = bounds.height();
+            
+            for (Rect instanceBounds : boundsArray) {
+            
+                final int width = instanceBounds.width();
+                final int height = instanceBounds.height();
+                
+                if ((width != geometryWidth) || (height != geometryHeight)) {
+                
+                    mGradientIsDirty = true;
+                    mPathIsDirty = true;
+                    mRingPath = null;
+                    
+                    ensureValidRect(instanceBounds);
+                    
+                    geometryChanged = true;
+                    geometryLeft = instanceBounds.left;
+                    geometryTop = instanceBounds.top;
+                    geometryWidth = width;
+                    geometryHeight = height;
+                
+                }
+                
+                if (mRect.isEmpty())
+                    continue;
+                
+                final int dx = (instanceBounds.left - geometryLeft);
+                final int dy = (instanceBounds.top - geometryTop);
+                
+                canvas.translate(dx, dy);
+                drawShape(canvas, useLayer, haveStroke);
+                canvas.translate(-dx, -dy);
+            
+            }
+            
+            if (geometryChanged) {
+            
+                // Recompute the geometry for our own bounds on the next draw.
+                mGradientIsDirty = true;
+                mPathIsDirty = true;
+                mRingPath = null;
+            
+            }
+        
+        }
+        
+        if (!useLayer) {
+        
+            mFillPaint.setAlpha(prevFillAlpha);
+            
+            if (haveStroke)
+                mStrokePaint.setAlpha(prevStrokeAlpha);
+        
+        }
+    
+    }
+    
+    /** Draws the fill and stroke of the shape into {@link #mRect}. */
+    private void drawShape(Canvas canvas, boolean useLayer, boolean haveStroke) {
+    
+        final GradientState st = mGradientState;
+        
+        if (useLayer) {
+        
+            float rad = mStrokePaint.getStrokeWidth();
+            canvas.saveLayer((mRect.left - rad), (mRect.top - rad), (mRect.right + rad), (mRect.bottom + rad),
+                mLayerPaint, Canvas.HAS_ALPHA_LAYER_SAVE_FLAG);
+        
+        }
+        
         switch (st.mShape) {
         
             case OVAL:
@@ -413,14 +530,6 @@ public class GradientDrawable extends LollipopDrawable {
         
         if (useLayer)
             canvas.restore();
-        else {
-        
-            mFillPaint.setAlpha(prevFillAlpha);
-            
-            if (haveStroke)
-                mStrokePaint.setAlpha(prevStrokeAlpha);
-        
-        }
     
     }
     
@@ -432,6 +541,14 @@ public class GradientDrawable extends LollipopDrawable {
      * @return true if the resulting rectangle is not empty, false otherwise
      */
     private boolean ensureValidRect() {
+        return ensureValidRect(getBounds());
+    }
+    
+    /**
+     * Same as {@link #ensureValidRect()}, but computes the drawing rectangle and gradient
+     * for the specified bounds rather than the drawable's bounds.
+     */
+    private boolean ensureValidRect(Rect bounds) {
     
         if (mGradientIsDirty) {
         
@@ -439,7 +556,6 @@ public class GradientDrawable extends LollipopDrawable {
             
             
             float inset = 0;
-            Rect bounds = getBounds();
             
             if (mStrokePaint != null)
                 inset = mStrokePaint.getStrokeWidth() * 0.5f;
@@ -813,7 +929,7 @@ public class GradientDrawable extends LollipopDrawable {
         
             final int[] currentState = getState();
             
-            final int stateColor = state.mColorStateList.getColorForState(currentState, 0);
+            final int stateColor = state.mColorLookup.getColorForState(currentState, 0);
             mFillPaint.setColor(stateColor);
         
         } else if (state.mColors == null)
@@ -829,7 +945,10 @@ public class GradientDrawable extends LollipopDrawable {
         
         if (state.mStrokeWidth >= 0) {
         
-            mStrokePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            // Reuse the stroke paint when re-initializing after mutate().
+            if (mStrokePaint == null)
+                mStrokePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            
             mStrokePaint.setStrokeWidth(state.mStrokeWidth);
             mStrokePaint.setStyle(Paint.Style.STROKE);
             
@@ -837,17 +956,17 @@ public class GradientDrawable extends LollipopDrawable {
             
                 final int[] currentState = getState();
                 
-                final int strokeStateColor = state.mStrokeColorStateList.getColorForState(currentState, 0);
+                final int strokeStateColor = state.mStrokeColorLookup.getColorForState(currentState, 0);
                 mStrokePaint.setColor(strokeStateColor);
             
             }
             
-            if (state.mStrokeDashWidth != 0.0f) {
+            DashPathEffect e = null;
             
-                final DashPathEffect e = new DashPathEffect(new float[] { state.mStrokeDashWidth, state.mStrokeDashGap }, 0);
-                mStrokePaint.setPathEffect(e);
+            if (state.mStrokeDashWidth != 0.0f)
+                e = DASH_PATH_EFFECT_CACHE.get(state.mStrokeDashWidth, state.mStrokeDashGap);
             
-            }
+            mStrokePaint.setPathEffect(e);
         
         }
     
@@ -930,7 +1049,7 @@ public class GradientDrawable extends LollipopDrawable {
         boolean invalidateSelf = false;
         
         final GradientState s = mGradientState;
-        final ColorStateList stateList = s.mColorStateList;
+        final ColorStateListLookup stateList = s.mColorLookup;
         
         if (stateList != null) {
         
@@ -950,7 +1069,7 @@ public class GradientDrawable extends LollipopDrawable {
         
         if (strokePaint != null) {
         
-            final ColorStateList strokeStateList = s.mStrokeColorStateList;
+            final ColorStateListLookup strokeStateList = s.mStrokeColorLookup;
             
             if (strokeStateList != null) {
             
@@ -1037,7 +1156,7 @@ public class GradientDrawable extends LollipopDrawable {
         else {
         
             final int[] stateSet = getState();
-            color = colorStateList.getColorForState(stateSet, 0);
+            color = mGradientState.mColorLookup.getColorForState(stateSet, 0);
         
         }
         
@@ -1073,7 +1192,8 @@ public class GradientDrawable extends LollipopDrawable {
      */
     public void setColors(int[] colors) {
     
-        mGradientState.setColors(colors);
+        // Copied since the state's arrays are shared with mutated copies.
+        mGradientState.setColors((colors != null) ? colors.clone() : null);
         mGradientIsDirty = true;
         
         invalidateSelf();
@@ -1099,7 +1219,8 @@ public class GradientDrawable extends LollipopDrawable {
      */
     public void setCornerRadii(float[] radii) {
     
-        mGradientState.setCornerRadii(radii);
+        // Copied since the state's arrays are shared with mutated copies.
+        mGradientState.setCornerRadii((radii != null) ? radii.clone() : null);
         mPathIsDirty = true;
         
         invalidateSelf();
@@ -1230,12 +1351,7 @@ public class GradientDrawable extends LollipopDrawable {
     
     public void setPadding(int left, int top, int right, int bottom) {
     
-        final GradientState st = mGradientState;
-        
-        if (st.mPadding == null)
-            st.mPadding = new Rect();
-        
-        final Rect pad = st.mPadding;
+        final Rect pad = mGradientState.getPaddingForWrite();
         pad.set(left, top, right, bottom);
         
         mPadding = pad;
@@ -1259,6 +1375,9 @@ public class GradientDrawable extends LollipopDrawable {
         mPathIsDirty = true;
         mRingPath = null;
         
+        if (shape != RECTANGLE)
+            mPath = null;
+        
         mGradientState.setShape(shape);
         invalidateSelf();
     
@@ -1373,7 +1492,7 @@ public class GradientDrawable extends LollipopDrawable {
         else {
         
             final int[] stateSet = getState();
-            color = colorStateList.getColorForState(stateSet, 0);
+            color = mGradientState.mStrokeColorLookup.getColorForState(stateSet, 0);
         
         }
         
@@ -1396,7 +1515,7 @@ public class GradientDrawable extends LollipopDrawable {
         DashPathEffect e = null;
         
         if (dashWidth > 0)
-            e = new DashPathEffect(new float[] { dashWidth, dashGap }, 0);
+            e = DASH_PATH_EFFECT_CACHE.get(dashWidth, dashGap);
         
         mStrokePaint.setPathEffect(e);
         invalidateSelf();
@@ -1594,10 +1713,7 @@ public class GradientDrawable extends LollipopDrawable {
         // Extract the theme attributes, if any.
         st.mAttrPadding = TypedArrayCompat.extractThemeAttrs(a);
         
-        if (st.mPadding == null)
-            st.mPadding = new Rect();
-        
-        final Rect pad = st.mPadding;
+        final Rect pad = st.getPaddingForWrite();
         pad.set(a.getDimensionPixelOffset(R.styleable.GradientDrawablePadding_android_left, pad.left),
                 a.getDimensionPixelOffset(R.styleable.GradientDrawablePadding_android_top, pad.top),
                 a.getDimensionPixelOffset(R.styleable.GradientDrawablePadding_android_right, pad.right),
@@ -1714,6 +1830,7 @@ public class GradientDrawable extends LollipopDrawable {
     
         private boolean mOpaqueOverBounds;
         private boolean mOpaqueOverShape;
+        private boolean mPaddingShared;
         private boolean mUseLevel;
         private boolean mUseLevelForShape;
         
@@ -1751,6 +1868,10 @@ public class GradientDrawable extends LollipopDrawable {
         ColorStateList mColorStateList;
         ColorStateList mStrokeColorStateList;
         
+        // Compiled forms of the color state lists above, kept in sync by the setters.
+        ColorStateListLookup mColorLookup;
+        ColorStateListLookup mStrokeColorLookup;
+        
         Orientation mOrientation;
         Rect mPadding = null;
         
@@ -1766,29 +1887,36 @@ public class GradientDrawable extends LollipopDrawable {
         
             mAngle = state.mAngle;
             mChangingConfigurations = state.mChangingConfigurations;
+            mColorLookup = state.mColorLookup;
             mColorStateList = state.mColorStateList;
             mGradient = state.mGradient;
             mOrientation = state.mOrientation;
             mShape = state.mShape;
             
-            if (state.mColors != null)
-                mColors = state.mColors.clone();
-            
-            if (state.mPositions != null)
-                mPositions = state.mPositions.clone();
-            
+            // The gradient and corner arrays are only ever replaced wholesale,
+            // never written in place, so they can be shared with the source.
+            mColors = state.mColors;
+            mPositions = state.mPositions;
             mRadius = state.mRadius;
             
+            mStrokeColorLookup = state.mStrokeColorLookup;
             mStrokeColorStateList = state.mStrokeColorStateList;
             mStrokeDashGap = state.mStrokeDashGap;
             mStrokeDashWidth = state.mStrokeDashWidth;
             mStrokeWidth = state.mStrokeWidth;
             
-            if (state.mRadiusArray != null)
-                mRadiusArray = state.mRadiusArray.clone();
+            mRadiusArray = state.mRadiusArray;
+            
+            // The padding is written in place, so it is shared until either
+            // state modifies it (see getPaddingForWrite()).
+            if (state.mPadding != null) {
             
-            if (state.mPadding != null)
-                mPadding = new Rect(state.mPadding);
+                mPadding = state.mPadding;
+                mPaddingShared = true;
+                
+                state.mPaddingShared = true;
+            
+            }
             
             mAttrCorners = state.mAttrCorners;
             mAttrGradient = state.mAttrGradient;
@@ -1854,6 +1982,22 @@ public class GradientDrawable extends LollipopDrawable {
             return mChangingConfigurations;
         }
         
+        /**
+         * Returns a padding rect owned by this state that can safely be modified,
+         * cloning it first if it is still shared with another state.
+         */
+        Rect getPaddingForWrite() {
+        
+            if (mPadding == null)
+                mPadding = new Rect();
+            else if (mPaddingShared)
+                mPadding = new Rect(mPadding);
+            
+            mPaddingShared = false;
+            return mPadding;
+        
+        }
+        
         @Override
         public Drawable newDrawable() {
             return new GradientDrawable(this, null);
@@ -1872,6 +2016,7 @@ public class GradientDrawable extends LollipopDrawable {
         void setColorStateList(ColorStateList colorStateList) {
         
             mColors = null;
+            mColorLookup = ColorStateListLookup.get(colorStateList);
             mColorStateList = colorStateList;
             
             computeOpacity();
@@ -1881,6 +2026,7 @@ public class GradientDrawable extends LollipopDrawable {
         void setColors(int[] colors) {
         
             mColors = colors;
+            mColorLookup = null;
             mColorStateList = null;
             
             computeOpacity();
@@ -1933,6 +2079,7 @@ public class GradientDrawable extends LollipopDrawable {
         
         void setStroke(int width, ColorStateList colorStateList, float dashWidth, float dashGap) {
         
+            mStrokeColorLookup = ColorStateListLookup.get(colorStateList);
             mStrokeColorStateList = colorStateList;
             mStrokeDashWidth = dashWidth;
             mStrokeDashGap = dashGap;
@@ -1951,6 +2098,32 @@ public class GradientDrawable extends LollipopDrawable {
     
     }
     
+    private static class DashPathEffectLruCache extends LruCache<Long, DashPathEffect> {
+    
+        DashPathEffectLruCache(int maxSize) {
+            super(maxSize);
+        }
+        
+        @Override
+        protected DashPathEffect create(Long key) {
+        
+            final float dashWidth = Float.intBitsToFloat((int) (key >>> 32));
+            final float dashGap = Float.intBitsToFloat((int) (key & 0xFFFFFFFFL));
+            
+            return new DashPathEffect(new float[] { dashWidth, dashGap }, 0);
+        
+        }
+        
+        private static long generateCacheKey(float dashWidth, float dashGap) {
+            return (((long) Float.floatToIntBits(dashWidth) << 32) | (Float.floatToIntBits(dashGap) & 0xFFFFFFFFL));
+        }
+        
+        DashPathEffect get(float dashWidth, float dashGap) {
+            return get(generateCacheKey(dashWidth, dashGap));
+        }
+    
+    }
+    
     /** Controls how the gradient is oriented relative to the drawable's bounds. */
     public enum Orientation {
     
@@ -8,6 +8,7 @@ import  android.content.res.Resources.Theme;
 import  android.graphics.Canvas;
 import  android.graphics.ColorFilter;
 import  android.graphics.Outline;
+import  android.graphics.PixelFormat;
 import  android.graphics.PorterDuff.Mode;
 import  android.graphics.Rect;
 import  android.graphics.drawable.Drawable;
@@ -37,7 +38,7 @@ public class InsetDrawable extends LollipopDrawable implements Drawable.Callback
     private final Rect mTmpRect = new Rect();
     
     private boolean mMutated;
-    private InsetState mInsetState;
+    InsetState mInsetState;
     private Rect mHotspotBounds;
     
     /*package*/ InsetDrawable() {
@@ -153,7 +154,17 @@ public class InsetDrawable extends LollipopDrawable implements Drawable.Callback
     
     @Override
     public int getOpacity() {
-        return mInsetState.mDrawable.getOpacity();
+    
+        final InsetState state = mInsetState;
+        final int opacity = state.mDrawable.getOpacity();
+        
+        // The insets leave a transparent margin around the drawable.
+        if ((opacity == PixelFormat.OPAQUE) && ((state.mInsetLeft > 0) || (state.mInsetTop > 0)
+            || (state.mInsetRight > 0) || (state.mInsetBottom > 0)))
+            return PixelFormat.TRANSLUCENT;
+        
+        return opacity;
+    
     }
     
     @Override
@@ -11,6 +11,7 @@ import  android.graphics.Outline;
 import  android.graphics.PixelFormat;
 import  android.graphics.PorterDuff.Mode;
 import  android.graphics.Rect;
+import  android.graphics.drawable.ColorDrawable;
 import  android.graphics.drawable.Drawable;
 import  android.os.Build;
 import  android.util.AttributeSet;
@@ -31,6 +32,12 @@ import  robertapengelly.support.lollipopdrawables.R;
  * <p>It can be defined in an XML file with the <code>&lt;layer-list></code> element.
  * Each Drawable in the layer is defined in a nested <code>&lt;item></code>.</p>
  *
+ * <p>Setting the <code>flattenLayers</code> attribute moves the layers of nested
+ * <code>&lt;layer-list></code> elements and the insets of <code>&lt;inset></code> elements
+ * into this drawable while it is inflated, where doing so doesn't change how it is drawn
+ * or measured. The nested drawables are then not returned by {@link #getDrawable(int)},
+ * and {@link #getNumberOfLayers()} counts the layers they contained.</p>
+ *
  * <p>For more information, see the guide to
  * <a href="{@docRoot}guide/topics/resources/drawable-resource.html">Drawable Resources</a>.</p>
  */
@@ -56,6 +63,9 @@ public class LayerDrawable extends LollipopDrawable implements Drawable.Callback
     
     private int mOpacityOverride = PixelFormat.UNKNOWN;
     
+    /** Index of the lowest layer not hidden by an opaque layer above it, or -1 if not computed. */
+    private int mFirstVisibleLayer = -1;
+    
     private boolean mMutated;
     
     private int[] mPaddingB, mPaddingL, mPaddingR, mPaddingT;
@@ -143,6 +153,8 @@ public class LayerDrawable extends LollipopDrawable implements Drawable.Callback
         st.mNum++;
         
         st.invalidateCache();
+        st.invalidateIdTable();
+        invalidateOcclusion();
     
     }
     
@@ -195,8 +207,13 @@ public class LayerDrawable extends LollipopDrawable implements Drawable.Callback
         
             final ChildDrawable layer = array[i];
             
-            if (layer.mThemeAttrs != null)
+            if (layer.mThemeAttrs != null) {
+            
+                // The theme may change the id of the layer.
                 updateLayerFromTypedArray(t, layer.mThemeAttrs, layer, null);
+                mLayerState.invalidateIdTable();
+            
+            }
             
             final Drawable d = layer.mDrawable;
             
@@ -279,13 +296,54 @@ public class LayerDrawable extends LollipopDrawable implements Drawable.Callback
     
     }
     
+    /**
+     * Returns the index of the topmost layer that is opaque and covers the bounds of this
+     * drawable, or 0 if there's none. Layers below it can't be seen.
+     *
+     * <p>Many drawables report the opacity of their content even when they leave part of
+     * their bounds empty, e.g. clip and scale drawables before Marshmallow, so only layers
+     * known to fill their bounds when opaque can hide the layers below them.</p>
+     */
+    private int computeFirstVisibleLayer() {
+    
+        final Rect bounds = getBounds();
+        
+        final ChildDrawable[] array = mLayerState.mChildren;
+        
+        for (int i = (mLayerState.mNum - 1); i > 0; --i) {
+        
+            // The bounds of a layer already account for its insets and the padding of the
+            // layers below it.
+            final Drawable d = array[i].mDrawable;
+            
+            if (fillsBounds(d) && (d.getOpacity() == PixelFormat.OPAQUE) && d.getBounds().contains(bounds))
+                return i;
+        
+        }
+        
+        return 0;
+    
+    }
+    
+    /**
+     * Whether the drawable paints all of its bounds when it reports being opaque. A gradient
+     * is only opaque as a rectangle without rounded corners.
+     */
+    private static boolean fillsBounds(Drawable d) {
+        return ((d instanceof ColorDrawable) || (d instanceof GradientDrawable));
+    }
+    
     @Override
     public void draw(Canvas canvas) {
     
+        if (mFirstVisibleLayer < 0)
+            mFirstVisibleLayer = computeFirstVisibleLayer();
+        
         final ChildDrawable[] array = mLayerState.mChildren;
         final int N = mLayerState.mNum;
         
-        for (int i = 0; i < N; ++i)
+        // Skip the layers that are fully covered by an opaque layer above them.
+        for (int i = mFirstVisibleLayer; i < N; ++i)
             array[i].mDrawable.draw(canvas);
     
     }
@@ -317,13 +375,35 @@ public class LayerDrawable extends LollipopDrawable implements Drawable.Callback
      */
     public Drawable findDrawableByLayerId(int id) {
     
-        final ChildDrawable[] layers = mLayerState.mChildren;
+        final int index = mLayerState.indexOfLayerId(id);
+        return ((index >= 0) ? mLayerState.mChildren[index].mDrawable : null);
+    
+    }
+    
+    /**
+     * Replaces the drawable of the layer by the drawable wrapped in it while the drawable is a
+     * plain {@link InsetDrawable}, keeping its insets in the layer.
+     */
+    private static void foldInsets(ChildDrawable layer) {
+    
+        while (layer.mDrawable.getClass() == InsetDrawable.class) {
         
-        for (int i = (mLayerState.mNum - 1); i >= 0; --i)
-            if (layers[i].mId == id)
-                return layers[i].mDrawable;
+            final InsetDrawable.InsetState state = ((InsetDrawable) layer.mDrawable).mInsetState;
+            final Drawable dr = state.mDrawable;
+            
+            // The inset doesn't pass its theme on to the wrapped drawable.
+            if ((dr == null) || (state.mThemeAttrs != null) || LollipopDrawablesCompat.canApplyTheme(dr))
+                return;
+            
+            layer.mFoldedInsetB += state.mInsetBottom;
+            layer.mFoldedInsetL += state.mInsetLeft;
+            layer.mFoldedInsetR += state.mInsetRight;
+            layer.mFoldedInsetT += state.mInsetTop;
+            
+            layer.mDrawable.setCallback(null);
+            layer.mDrawable = dr;
         
-        return null;
+        }
     
     }
     
@@ -533,17 +613,22 @@ public class LayerDrawable extends LollipopDrawable implements Drawable.Callback
         
         final TypedArray a = obtainAttributes(r, theme, attrs, R.styleable.LayerDrawable);
         updateStateFromTypedArray(a);
+        
+        final boolean flatten = a.getBoolean(R.styleable.LayerDrawable_flattenLayers, false);
         a.recycle();
         
-        inflateLayers(r, parser, attrs, theme);
+        inflateLayers(r, parser, attrs, theme, flatten);
         
         ensurePadding();
         onStateChange(getState());
     
     }
     
-    /** Inflates child layers using the specified parser. */
-    private void inflateLayers(Resources r, XmlPullParser parser, AttributeSet attrs, Theme theme)
+    /**
+     * Inflates child layers using the specified parser, flattening nested layer lists and
+     * insets if requested.
+     */
+    private void inflateLayers(Resources r, XmlPullParser parser, AttributeSet attrs, Theme theme, boolean flatten)
         throws XmlPullParserException, IOException {
         
         final LayerState state = mLayerState;
@@ -581,6 +666,17 @@ public class LayerDrawable extends LollipopDrawable implements Drawable.Callback
             if (layer.mDrawable != null) {
             
                 state.mChildrenChangingConfigurations |= layer.mDrawable.getChangingConfigurations();
+                
+                // A layer that resolves theme attributes may get a new drawable later.
+                if (flatten && (layer.mThemeAttrs == null)) {
+                
+                    foldInsets(layer);
+                    
+                    if (spliceLayers(layer))
+                        continue;
+                
+                }
+                
                 layer.mDrawable.setCallback(this);
             
             }
@@ -601,9 +697,21 @@ public class LayerDrawable extends LollipopDrawable implements Drawable.Callback
         return mLayerState.isStateful();
     }
     
+    /**
+     * Forgets which layers are hidden by opaque layers above them, called whenever the
+     * bounds or opacity of a layer may have changed.
+     */
+    void invalidateOcclusion() {
+        mFirstVisibleLayer = -1;
+    }
+    
     @Override
     public void invalidateDrawable(Drawable who) {
+    
+        // The layer may have changed its opacity.
+        invalidateOcclusion();
         invalidateSelf();
+    
     }
     
     @Override
@@ -612,6 +720,7 @@ public class LayerDrawable extends LollipopDrawable implements Drawable.Callback
         if (!mMutated && (super.mutate() == this)) {
         
             mLayerState = createConstantState(mLayerState, null);
+            invalidateOcclusion();
             
             final ChildDrawable[] array = mLayerState.mChildren;
             final int N = mLayerState.mNum;
@@ -629,41 +738,27 @@ public class LayerDrawable extends LollipopDrawable implements Drawable.Callback
     
     @Override
     protected void onBoundsChange(Rect bounds) {
+        updateLayerBounds(bounds, 0);
+    }
     
-        int padB = 0;
-        int padL = 0;
-        int padR = 0;
-        int padT = 0;
-        
-        final boolean nest = (mLayerState.mPaddingMode == PADDING_MODE_NEST);
-        
-        final ChildDrawable[] array = mLayerState.mChildren;
-        final int N = mLayerState.mNum;
-        
-        for (int i = 0; i < N; ++i) {
-        
-            final ChildDrawable r = array[i];
-            r.mDrawable.setBounds((bounds.left + r.mInsetL + padL), (bounds.top + r.mInsetT + padT),
-                (bounds.right - r.mInsetR + padR), (bounds.bottom - r.mInsetB + padB));
-            
-            if (nest) {
-            
-                padB += mPaddingB[i];
-                padL += mPaddingL[i];
-                padR += mPaddingR[i];
-                padT += mPaddingT[i];
-            
-            }
-        
-        }
+    /**
+     * Called after the padding of the layer at the specified index changed. Padding only
+     * moves the layers above that layer, and only when they are nested.
+     */
+    private void onChildPaddingChange(int index) {
+    
+        if (mLayerState.mPaddingMode == PADDING_MODE_NEST)
+            updateLayerBounds(getBounds(), (index + 1));
     
     }
     
     @Override
     protected boolean onLevelChange(int level) {
     
+        invalidateOcclusion();
+        
         boolean changed = false;
-        boolean paddingChanged = false;
+        int firstPaddingChange = -1;
         
         final ChildDrawable[] array = mLayerState.mChildren;
         final int N = mLayerState.mNum;
@@ -675,13 +770,13 @@ public class LayerDrawable extends LollipopDrawable implements Drawable.Callback
             if (r.mDrawable.setLevel(level))
                 changed = true;
             
-            if (refreshChildPadding(i, r))
-                paddingChanged = true;
+            if (refreshChildPadding(i, r) && (firstPaddingChange < 0))
+                firstPaddingChange = i;
         
         }
         
-        if (paddingChanged)
-            onBoundsChange(getBounds());
+        if (firstPaddingChange >= 0)
+            onChildPaddingChange(firstPaddingChange);
         
         return changed;
     
@@ -690,8 +785,10 @@ public class LayerDrawable extends LollipopDrawable implements Drawable.Callback
     @Override
     protected boolean onStateChange(int[] state) {
     
+        invalidateOcclusion();
+        
         boolean changed = false;
-        boolean paddingChanged = false;
+        int firstPaddingChange = -1;
         
         final ChildDrawable[] array = mLayerState.mChildren;
         final int N = mLayerState.mNum;
@@ -703,13 +800,13 @@ public class LayerDrawable extends LollipopDrawable implements Drawable.Callback
             if (r.mDrawable.isStateful() && r.mDrawable.setState(state))
                 changed = true;
             
-            if (refreshChildPadding(i, r))
-                paddingChanged = true;
+            if (refreshChildPadding(i, r) && (firstPaddingChange < 0))
+                firstPaddingChange = i;
         
         }
         
-        if (paddingChanged)
-            onBoundsChange(getBounds());
+        if (firstPaddingChange >= 0)
+            onChildPaddingChange(firstPaddingChange);
         
         return changed;
     
@@ -725,6 +822,11 @@ public class LayerDrawable extends LollipopDrawable implements Drawable.Callback
         final Rect rect = mTmpRect;
         r.mDrawable.getPadding(rect);
         
+        rect.bottom += r.mFoldedInsetB;
+        rect.left += r.mFoldedInsetL;
+        rect.right += r.mFoldedInsetR;
+        rect.top += r.mFoldedInsetT;
+        
         if ((rect.bottom != mPaddingB[i]) || (rect.left != mPaddingL[i])
             || (rect.right != mPaddingR[i]) || (rect.top != mPaddingT[i])) {
             
@@ -749,6 +851,8 @@ public class LayerDrawable extends LollipopDrawable implements Drawable.Callback
     @Override
     public void setAlpha(int alpha) {
     
+        invalidateOcclusion();
+        
         final ChildDrawable[] array = mLayerState.mChildren;
         final int N = mLayerState.mNum;
         
@@ -776,6 +880,8 @@ public class LayerDrawable extends LollipopDrawable implements Drawable.Callback
     @Override
     public void setColorFilter(ColorFilter cf) {
     
+        invalidateOcclusion();
+        
         final ChildDrawable[] array = mLayerState.mChildren;
         final int N = mLayerState.mNum;
         
@@ -798,6 +904,9 @@ public class LayerDrawable extends LollipopDrawable implements Drawable.Callback
     /**
      * Sets (or replaces) the {@link Drawable} for the layer with the given id.
      *
+     * <p>If multiple layers have the given ID, the layer at the highest index
+     * is replaced.</p>
+     *
      * @param id       The layer ID to search for.
      * @param drawable The replacement {@link Drawable}.
      * @return Whether the {@link Drawable} was replaced (could return false if
@@ -805,41 +914,34 @@ public class LayerDrawable extends LollipopDrawable implements Drawable.Callback
      */
     public boolean setDrawableByLayerId(int id, Drawable drawable) {
     
-        final ChildDrawable[] layers = mLayerState.mChildren;
-        final int N = mLayerState.mNum;
+        final int index = mLayerState.indexOfLayerId(id);
         
-        for (int i = 0; i < N; ++i) {
+        if (index < 0)
+            return false;
+        
+        final ChildDrawable childDrawable = mLayerState.mChildren[index];
+        
+        if (childDrawable.mDrawable != null) {
         
-            final ChildDrawable childDrawable = layers[i];
+            if (drawable != null) {
             
-            if (childDrawable.mId == id) {
-            
-                if (childDrawable.mDrawable != null) {
-                
-                    if (drawable != null) {
-                    
-                        final Rect bounds = childDrawable.mDrawable.getBounds();
-                        drawable.setBounds(bounds);
-                    
-                    }
-                    
-                    childDrawable.mDrawable.setCallback(null);
-                
-                }
-                
-                if (drawable != null)
-                    drawable.setCallback(this);
-                
-                childDrawable.mDrawable = drawable;
-                mLayerState.invalidateCache();
-                
-                return true;
+                final Rect bounds = childDrawable.mDrawable.getBounds();
+                drawable.setBounds(bounds);
             
             }
+            
+            childDrawable.mDrawable.setCallback(null);
         
         }
         
-        return false;
+        if (drawable != null)
+            drawable.setCallback(this);
+        
+        childDrawable.mDrawable = drawable;
+        mLayerState.invalidateCache();
+        invalidateOcclusion();
+        
+        return true;
     
     }
     
@@ -895,7 +997,10 @@ public class LayerDrawable extends LollipopDrawable implements Drawable.Callback
      * @param id    The ID to assign to the layer.
      */
     public void setId(int index, int id) {
+    
         mLayerState.mChildren[index].mId = id;
+        mLayerState.invalidateIdTable();
+    
     }
     
     /**
@@ -914,6 +1019,8 @@ public class LayerDrawable extends LollipopDrawable implements Drawable.Callback
         childDrawable.mInsetL = l;
         childDrawable.mInsetR = r;
         childDrawable.mInsetT = t;
+        
+        invalidateOcclusion();
     
     }
     
@@ -956,6 +1063,8 @@ public class LayerDrawable extends LollipopDrawable implements Drawable.Callback
     @Override
     public void setTintList(ColorStateList tint) {
     
+        invalidateOcclusion();
+        
         final ChildDrawable[] array = mLayerState.mChildren;
         final int N = mLayerState.mNum;
         
@@ -977,6 +1086,8 @@ public class LayerDrawable extends LollipopDrawable implements Drawable.Callback
     @Override
     public void setTintMode(Mode tintMode) {
     
+        invalidateOcclusion();
+        
         final ChildDrawable[] array = mLayerState.mChildren;
         final int N = mLayerState.mNum;
         
@@ -1010,11 +1121,116 @@ public class LayerDrawable extends LollipopDrawable implements Drawable.Callback
     
     }
     
+    /**
+     * Adds the layers of the drawable of the specified layer in its place if the drawable is a
+     * plain LayerDrawable that is drawn and measured the same way after doing so.
+     *
+     * @return true if the layers were added, false if the layer has to be added as is
+     */
+    private boolean spliceLayers(ChildDrawable layer) {
+    
+        // Folded insets apply once to the whole nested list, they can't be split up between its layers.
+        if ((layer.mDrawable.getClass() != LayerDrawable.class) || (layer.mId != View.NO_ID)
+            || ((layer.mFoldedInsetB | layer.mFoldedInsetL | layer.mFoldedInsetR | layer.mFoldedInsetT) != 0))
+            return false;
+        
+        final LayerDrawable nested = (LayerDrawable) layer.mDrawable;
+        final LayerState state = nested.mLayerState;
+        
+        if ((state.mNum == 0) || (state.mThemeAttrs != null) || (nested.mOpacityOverride != PixelFormat.UNKNOWN)
+            || (state.mAutoMirrored != mLayerState.mAutoMirrored) || (state.mPaddingMode != mLayerState.mPaddingMode))
+            return false;
+        
+        final ChildDrawable[] array = state.mChildren;
+        final int N = state.mNum;
+        
+        // Negative insets could shrink the intrinsic size of the nested list below that of
+        // its largest layer.
+        for (int i = 0; i < N; ++i) {
+        
+            final ChildDrawable r = array[i];
+            
+            if ((r.mId != View.NO_ID) || (r.mThemeAttrs != null)
+                || ((r.mInsetB | r.mInsetL | r.mInsetR | r.mInsetT) < 0))
+                return false;
+        
+        }
+        
+        for (int i = 0; i < N; ++i) {
+        
+            final ChildDrawable r = array[i];
+            
+            r.mInsetB += layer.mInsetB;
+            r.mInsetL += layer.mInsetL;
+            r.mInsetR += layer.mInsetR;
+            r.mInsetT += layer.mInsetT;
+            
+            r.mDrawable.setCallback(this);
+            addLayer(r);
+        
+        }
+        
+        return true;
+    
+    }
+    
     @Override
     public void unscheduleDrawable(Drawable who, Runnable what) {
         unscheduleSelf(what);
     }
     
+    /**
+     * Sets the bounds of the layers from the specified index up, the layers below it keep
+     * their current bounds.
+     */
+    private void updateLayerBounds(Rect bounds, int start) {
+    
+        invalidateOcclusion();
+        
+        int padB = 0;
+        int padL = 0;
+        int padR = 0;
+        int padT = 0;
+        
+        final boolean nest = (mLayerState.mPaddingMode == PADDING_MODE_NEST);
+        
+        final ChildDrawable[] array = mLayerState.mChildren;
+        final int N = mLayerState.mNum;
+        
+        if (nest) {
+        
+            for (int i = 0; i < start; ++i) {
+            
+                padB += mPaddingB[i];
+                padL += mPaddingL[i];
+                padR += mPaddingR[i];
+                padT += mPaddingT[i];
+            
+            }
+        
+        }
+        
+        for (int i = start; i < N; ++i) {
+        
+            final ChildDrawable r = array[i];
+            r.mDrawable.setBounds((bounds.left + r.mInsetL + r.mFoldedInsetL + padL),
+                (bounds.top + r.mInsetT + r.mFoldedInsetT + padT),
+                (bounds.right - r.mInsetR - r.mFoldedInsetR - padR),
+                (bounds.bottom - r.mInsetB - r.mFoldedInsetB - padB));
+            
+            if (nest) {
+            
+                padB += mPaddingB[i];
+                padL += mPaddingL[i];
+                padR += mPaddingR[i];
+                padT += mPaddingT[i];
+            
+            }
+        
+        }
+    
+    }
+    
     private void updateLayerFromTypedArray(Theme theme, TypedValue[] extracted, ChildDrawable layer, TypedArray a) {
     
         final LayerState state = mLayerState;
@@ -1070,6 +1286,13 @@ public class LayerDrawable extends LollipopDrawable implements Drawable.Callback
         int mInsetB, mInsetL, mInsetR, mInsetT;
         TypedValue[] mThemeAttrs;
         
+        /**
+         * Insets of InsetDrawables folded into this layer at inflation. They inset the bounds
+         * and add to the padding of the layer, but unlike the insets of the layer they don't
+         * add to its intrinsic size.
+         */
+        int mFoldedInsetB, mFoldedInsetL, mFoldedInsetR, mFoldedInsetT;
+        
         ChildDrawable() {}
         
         ChildDrawable(ChildDrawable orig, LayerDrawable owner, Resources res) {
@@ -1093,6 +1316,11 @@ public class LayerDrawable extends LollipopDrawable implements Drawable.Callback
             mInsetR = orig.mInsetR;
             mInsetT = orig.mInsetT;
             
+            mFoldedInsetB = orig.mFoldedInsetB;
+            mFoldedInsetL = orig.mFoldedInsetL;
+            mFoldedInsetR = orig.mFoldedInsetR;
+            mFoldedInsetT = orig.mFoldedInsetT;
+            
             mThemeAttrs = orig.mThemeAttrs;
         
         }
@@ -1110,6 +1338,12 @@ public class LayerDrawable extends LollipopDrawable implements Drawable.Callback
         ChildDrawable[] mChildren;
         TypedValue[] mThemeAttrs;
         
+        /**
+         * Index of the highest layer with each id, or null if it has to be rebuilt. Never
+         * modified once built, so it can be shared with copies of this state.
+         */
+        private LongIntHashMap mIdTable;
+        
         LayerState(LayerState orig, LayerDrawable owner, Resources res) {
         
             if (orig != null) {
@@ -1133,6 +1367,7 @@ public class LayerDrawable extends LollipopDrawable implements Drawable.Callback
                 mAutoMirrored = orig.mAutoMirrored;
                 mHaveIsStateful = orig.mHaveIsStateful;
                 mHaveOpacity = orig.mHaveOpacity;
+                mIdTable = orig.mIdTable;
                 mIsStateful = orig.mIsStateful;
                 mOpacity = orig.mOpacity;
                 mPaddingMode = orig.mPaddingMode;
@@ -1191,6 +1426,33 @@ public class LayerDrawable extends LollipopDrawable implements Drawable.Callback
         
         }
         
+        /**
+         * Returns the index of the highest layer with the specified id, or -1 if there's
+         * no such layer.
+         */
+        final int indexOfLayerId(int id) {
+        
+            LongIntHashMap table = mIdTable;
+            
+            if (table == null) {
+            
+                final ChildDrawable[] array = mChildren;
+                final int N = mNum;
+                
+                table = new LongIntHashMap(N);
+                
+                // Later layers replace earlier ones, so the highest index wins.
+                for (int i = 0; i < N; ++i)
+                    table.put(array[i].mId, i);
+                
+                mIdTable = table;
+            
+            }
+            
+            return table.get(id, -1);
+        
+        }
+        
         void invalidateCache() {
         
             mHaveIsStateful = false;
@@ -1198,6 +1460,11 @@ public class LayerDrawable extends LollipopDrawable implements Drawable.Callback
         
         }
         
+        /** Called whenever a layer is added or the id of a layer changes. */
+        void invalidateIdTable() {
+            mIdTable = null;
+        }
+        
         final boolean isStateful() {
         
             if (mHaveIsStateful)
@@ -28,6 +28,9 @@ public abstract class LollipopDrawable extends Drawable {
     
     private ColorFilter mColorFilter;
     
+    /** Lookup compiled from the tint last passed to {@link #updateTintFilter}. */
+    private ColorStateListLookup mTintLookup;
+    
     /** Applies the specified theme to this Drawable and its children. */
     public void applyTheme(Resources.Theme t) {}
     
@@ -200,7 +203,12 @@ public abstract class LollipopDrawable extends Drawable {
         if ((tint == null) || (tintMode == null))
             return null;
         
-        final int color = tint.getColorForState(getState(), Color.TRANSPARENT);
+        ColorStateListLookup lookup = mTintLookup;
+        
+        if ((lookup == null) || (lookup.getColorStateList() != tint))
+            lookup = mTintLookup = ColorStateListLookup.get(tint);
+        
+        final int color = lookup.getColorForState(getState(), Color.TRANSPARENT);
         return new PorterDuffColorFilter(color, tintMode);
     }
     
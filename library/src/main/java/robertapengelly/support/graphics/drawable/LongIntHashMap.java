@@ -0,0 +1,143 @@
+package robertapengelly.support.graphics.drawable;
+
+import  java.util.Arrays;
+
+/**
+ * Open-addressed hash table mapping long keys to non-negative int values without boxing,
+ * used to look up the transitions of an animated selector and the layers of a layer list by
+ * id in constant time.
+ */
+final class LongIntHashMap {
+
+    /** Marks an empty slot, values stored in the table must not be negative. */
+    private static final int EMPTY = -1;
+    
+    private long[] mKeys;
+    private int[] mValues;
+    
+    private int mSize;
+    
+    LongIntHashMap(int capacity) {
+        allocate(tableSizeFor(capacity));
+    }
+    
+    LongIntHashMap(LongIntHashMap orig) {
+    
+        mKeys = orig.mKeys.clone();
+        mSize = orig.mSize;
+        mValues = orig.mValues.clone();
+    
+    }
+    
+    private void allocate(int tableSize) {
+    
+        mKeys = new long[tableSize];
+        mValues = new int[tableSize];
+        
+        Arrays.fill(mValues, EMPTY);
+    
+    }
+    
+    /**
+     * Gets the value mapped to the specified key, or the specified value if no such
+     * mapping has been made.
+     */
+    int get(long key, int valueIfKeyNotFound) {
+    
+        final long[] keys = mKeys;
+        final int[] values = mValues;
+        final int mask = (keys.length - 1);
+        
+        for (int slot = slotOf(key, mask); ; slot = ((slot + 1) & mask)) {
+        
+            final int value = values[slot];
+            
+            if (value == EMPTY)
+                return valueIfKeyNotFound;
+            
+            if (keys[slot] == key)
+                return value;
+        
+        }
+    
+    }
+    
+    /**
+     * Adds a mapping from the specified key to the specified value, replacing the previous
+     * mapping from the specified key if there was one.
+     */
+    void put(long key, int value) {
+    
+        if (value < 0)
+            throw new IllegalArgumentException("Value must not be negative: " + value);
+        
+        // Keep the load factor at or below one half so probe sequences stay short.
+        if (((mSize + 1) << 1) > mKeys.length)
+            rehash(mKeys.length << 1);
+        
+        final int mask = (mKeys.length - 1);
+        int slot = slotOf(key, mask);
+        
+        while ((mValues[slot] != EMPTY) && (mKeys[slot] != key))
+            slot = ((slot + 1) & mask);
+        
+        if (mValues[slot] == EMPTY)
+            ++mSize;
+        
+        mKeys[slot] = key;
+        mValues[slot] = value;
+    
+    }
+    
+    private void rehash(int tableSize) {
+    
+        final long[] oldKeys = mKeys;
+        final int[] oldValues = mValues;
+        
+        allocate(tableSize);
+        
+        final int mask = (tableSize - 1);
+        
+        for (int i = 0; i < oldKeys.length; ++i) {
+        
+            if (oldValues[i] == EMPTY)
+                continue;
+            
+            int slot = slotOf(oldKeys[i], mask);
+            
+            while (mValues[slot] != EMPTY)
+                slot = ((slot + 1) & mask);
+            
+            mKeys[slot] = oldKeys[i];
+            mValues[slot] = oldValues[i];
+        
+        }
+    
+    }
+    
+    /** Returns the number of key-value mappings in this table. */
+    int size() {
+        return mSize;
+    }
+    
+    private static int slotOf(long key, int mask) {
+    
+        // Fibonacci hashing spreads both halves of the key over the table.
+        final long hash = (key * 0x9E3779B97F4A7C15L);
+        return ((int) (hash ^ (hash >>> 32)) & mask);
+    
+    }
+    
+    /** Returns the power of two table size that holds the capacity at a load factor of one half. */
+    private static int tableSizeFor(int capacity) {
+    
+        int size = 4;
+        
+        while (size < (capacity << 1))
+            size <<= 1;
+        
+        return size;
+    
+    }
+
+}
\ No newline at end of file
@@ -24,8 +24,6 @@ import  android.util.LayoutDirection;
 import  android.util.TypedValue;
 
 import  java.io.IOException;
-import  java.io.InputStream;
-import  java.lang.reflect.Field;
 
 import  org.xmlpull.v1.XmlPullParser;
 import  org.xmlpull.v1.XmlPullParserException;
@@ -560,38 +558,13 @@ public class NinePatchDrawable extends LollipopDrawable {
             
             //noinspection deprecation
             options.inDither = !state.mDither;
-            
-            try {
-            
-                final Field field = DisplayMetrics.class.getDeclaredField("noncompatDensityDpi");
-                field.setAccessible(true);
-                field.get(r.getDisplayMetrics());
-            
-            } catch (Exception ex) {
-            
-                try {
-                
-                    final Field field = DisplayMetrics.class.getDeclaredField("DENSITY_DEVICE");
-                    field.setAccessible(true);
-                    field.get(r.getDisplayMetrics());
-                
-                } catch (Exception ignored) {}
-            
-            }
+            options.inScreenDensity = DrawableReflectiveUtils.getScreenDensity(r.getDisplayMetrics());
             
             final Rect padding = new Rect();
             
-            Bitmap bitmap = null;
-            
-            try {
-            
-                final TypedValue value = new TypedValue();
-                final InputStream is = r.openRawResource(srcResId, value);
-                
-                bitmap = BitmapFactory.decodeResourceStream(r, value, is, padding, options);
-                is.close();
-            
-            } catch (IOException ignored) {}
+            // Sampling would leave the stretch regions at full size.
+            final Bitmap bitmap = BitmapDecodePolicy.getDefault().decodeCachedResource(r, srcResId, padding, options,
+                false, false);
             
             if (bitmap == null)
                 throw new XmlPullParserException(a.getPositionDescription() +
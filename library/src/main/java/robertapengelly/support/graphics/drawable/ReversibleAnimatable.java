@@ -0,0 +1,13 @@
+package robertapengelly.support.graphics.drawable;
+
+/**
+ * Interface that animatable drawables able to play their animation backwards from its
+ * current progress should implement. Animated selectors use it to reverse a transition
+ * mid-flight instead of restarting it.
+ */
+public interface ReversibleAnimatable extends Animatable {
+
+    /** Reverses the direction of the animation, continuing from its current progress. */
+    void reverse();
+
+}
\ No newline at end of file
@@ -448,7 +448,7 @@ public class RippleDrawable extends LayerDrawable {
             
                 final Paint maskingPaint = getMaskingPaint(mode);
                 
-                final int color = mState.mColor.getColorForState(getState(), Color.TRANSPARENT);
+                final int color = mState.getColorForState(getState());
                 
                 final int alpha = Color.alpha(color);
                 maskingPaint.setAlpha(alpha / 2);
@@ -945,7 +945,7 @@ public class RippleDrawable extends LayerDrawable {
         if (mBackground == null)
             mBackground = new RippleBackground(this, mHotspotBounds);
         
-        final int color = mState.mColor.getColorForState(getState(), Color.TRANSPARENT);
+        final int color = mState.getColorForState(getState());
         mBackground.setup(mState.mMaxRadius, color, mDensity);
         mBackground.enter();
     
@@ -993,7 +993,7 @@ public class RippleDrawable extends LayerDrawable {
         
         }
         
-        final int color = mState.mColor.getColorForState(getState(), Color.TRANSPARENT);
+        final int color = mState.getColorForState(getState());
         mRipple.setup(mState.mMaxRadius, color, mDensity);
         mRipple.enter();
     
@@ -1054,6 +1054,8 @@ public class RippleDrawable extends LayerDrawable {
         ColorStateList mColor = ColorStateList.valueOf(Color.MAGENTA);
         TypedValue[] mTouchThemeAttrs;
         
+        private ColorStateListLookup mColorLookup;
+        
         RippleState(LayerState orig, RippleDrawable owner, Resources res) {
             super(orig, owner, res);
             
@@ -1074,6 +1076,18 @@ public class RippleDrawable extends LayerDrawable {
             return ((mTouchThemeAttrs != null) || super.canApplyTheme());
         }
         
+        /** Returns the ripple color for the given states, compiling {@link #mColor} when it changes. */
+        int getColorForState(int[] stateSet) {
+        
+            ColorStateListLookup lookup = mColorLookup;
+            
+            if ((lookup == null) || (lookup.getColorStateList() != mColor))
+                lookup = mColorLookup = ColorStateListLookup.get(mColor);
+            
+            return ColorStateListLookup.getColorForState(lookup, stateSet, Color.TRANSPARENT);
+        
+        }
+        
         @Override
         public Drawable newDrawable() {
             return new RippleDrawable(this, null, null);
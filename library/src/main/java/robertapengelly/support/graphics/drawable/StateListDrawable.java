@@ -128,7 +128,8 @@ public class StateListDrawable extends DrawableContainer {
     }
     
     /**
-     * Gets the state set at an index.
+     * Gets the state set at an index. The returned array may be shared with other
+     * drawables and must not be modified.
      *
      * @param index The index of the state set.
      * @return The state set at the index.
@@ -193,7 +194,7 @@ public class StateListDrawable extends DrawableContainer {
             
             }
             
-            states = StateSet.trimStateSet(states, j);
+            states = StateSetMatcher.intern(StateSet.trimStateSet(states, j));
             
             final Drawable dr;
             
@@ -228,21 +229,12 @@ public class StateListDrawable extends DrawableContainer {
     @Override
     public Drawable mutate() {
     
+        // State sets are never modified once added, so the mutated state keeps sharing
+        // them and only its own copy of the outer array is needed.
         if (!mMutated && (super.mutate() == this)) {
         
             final int[][] sets = mStateListState.mStateSets;
-            
-            final int count = sets.length;
-            mStateListState.mStateSets = new int[count][];
-            
-            for (int i = 0; i < count; ++i) {
-            
-                final int[] set = sets[i];
-                
-                if (set != null)
-                    mStateListState.mStateSets[i] = set.clone();
-            
-            }
+            mStateListState.mStateSets = Arrays.copyOf(sets, sets.length);
             
             mMutated = true;
         
@@ -278,12 +270,26 @@ public class StateListDrawable extends DrawableContainer {
     
         int[][] mStateSets;
         
+        /** Compiled form of {@link #mStateSets}, valid while {@link #mMatcherCompiled} is true. */
+        private boolean mMatcherCompiled;
+        private StateSetMatcher mMatcher;
+        
+        /** A copy of the last looked up state set, compared by content, and its index. */
+        private LastMatch mLastMatch;
+        
         StateListState(StateListState orig, StateListDrawable owner, Resources res) {
             super(orig, owner, res);
         
-            if (orig != null)
+            if (orig != null) {
+            
                 mStateSets = Arrays.copyOf(orig.mStateSets, orig.mStateSets.length);
-            else
+                
+                // The compiled matcher and memo are immutable, so they can be shared.
+                mLastMatch = orig.mLastMatch;
+                mMatcher = orig.mMatcher;
+                mMatcherCompiled = orig.mMatcherCompiled;
+            
+            } else
                 mStateSets = new int[getCapacity()][];
         
         }
@@ -293,6 +299,9 @@ public class StateListDrawable extends DrawableContainer {
             final int pos = addChild(drawable);
             mStateSets[pos] = stateSet;
             
+            mLastMatch = null;
+            mMatcherCompiled = false;
+            
             return pos;
         
         }
@@ -310,14 +319,47 @@ public class StateListDrawable extends DrawableContainer {
         
         int indexOfStateSet(int[] stateSet) {
         
+            // Callers reuse and modify their state set arrays, so the last state set is kept
+            // as a copy and compared by content. State sets are short, this is still cheaper
+            // than matching them.
+            final LastMatch lastMatch = mLastMatch;
+            
+            if ((lastMatch != null) && Arrays.equals(lastMatch.mStateSet, stateSet))
+                return lastMatch.mIndex;
+            
             final int N = getChildCount();
-            final int[][] stateSets = mStateSets;
             
-            for (int i = 0; i < N; ++i)
-                if (StateSet.stateSetMatches(stateSets[i], stateSet))
-                    return i;
+            if (!mMatcherCompiled) {
+            
+                mMatcher = StateSetMatcher.obtain(mStateSets, N);
+                mMatcherCompiled = true;
+            
+            }
+            
+            int index = -1;
+            
+            if (mMatcher != null)
+                index = mMatcher.indexOf(stateSet);
+            else {
+            
+                // Too many distinct states to compile, match them one by one.
+                final int[][] stateSets = mStateSets;
+                
+                for (int i = 0; i < N; ++i) {
+                
+                    if (StateSet.stateSetMatches(stateSets[i], stateSet)) {
+                    
+                        index = i;
+                        break;
+                    
+                    }
+                
+                }
+            
+            }
             
-            return -1;
+            mLastMatch = new LastMatch(((stateSet != null) ? stateSet.clone() : null), index);
+            return index;
         
         }
         
@@ -330,6 +372,21 @@ public class StateListDrawable extends DrawableContainer {
         public Drawable newDrawable(Resources res) {
             return new StateListDrawable(this, res);
         }
+        
+        /** Immutable pair so the memo can be read and replaced in a single write. */
+        private static final class LastMatch {
+        
+            final int mIndex;
+            final int[] mStateSet;
+            
+            LastMatch(int[] stateSet, int index) {
+            
+                mIndex = index;
+                mStateSet = stateSet;
+            
+            }
+        
+        }
     
     }
 
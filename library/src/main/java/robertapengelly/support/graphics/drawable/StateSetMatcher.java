@@ -0,0 +1,291 @@
+package robertapengelly.support.graphics.drawable;
+
+import  java.util.Arrays;
+
+/**
+ * Compiled form of a list of state specs, as used by selectors and color state lists,
+ * that finds the first spec matching a state set with a few mask operations instead of
+ * calling {@link android.util.StateSet#stateSetMatches(int[], int[])} for every spec.
+ *
+ * <p>Each state attribute referenced by the specs is mapped to a bit and every spec is
+ * compiled into a pair of required/forbidden masks. When the specs reference at most
+ * {@link #MAX_TABLE_BITS} distinct states the matching spec for every possible mask is
+ * precomputed, so a lookup is a single array access.</p>
+ *
+ * <p>Instances are immutable and can be shared between threads. Identical state sets and
+ * the matchers compiled from them are interned in process-wide tables, see
+ * {@link #intern(int[])} and {@link #obtain(int[][], int)}, so selectors inflated many
+ * times share their storage.</p>
+ */
+final class StateSetMatcher {
+
+    /** Maximum number of entries kept in each intern table. */
+    private static final int INTERN_TABLE_SIZE = 256;
+    
+    /** Largest number of distinct states for which a mask to spec table is built. */
+    private static final int MAX_TABLE_BITS = 8;
+    
+    /** Largest number of distinct states that fit in the compiled masks. */
+    private static final int MAX_MASK_BITS = 32;
+    
+    private static final LruCache<SpecsKey, StateSetMatcher> sMatchers =
+        new LruCache<>(INTERN_TABLE_SIZE);
+    
+    private static final LruCache<SpecsKey, int[]> sStateSets = new LruCache<>(INTERN_TABLE_SIZE);
+    
+    /** Required and forbidden state masks for each spec. */
+    private final int[] mForbiddenMasks;
+    private final int[] mRequiredMasks;
+    
+    /** Sorted state attribute ids, the index of an id is its bit in the masks. */
+    private final int[] mStateIds;
+    
+    /** Index of the first matching spec for each mask, or null if there are too many states. */
+    private final int[] mTable;
+    
+    private StateSetMatcher(int[][] specs, int count, int[] stateIds) {
+    
+        mForbiddenMasks = new int[count];
+        mRequiredMasks = new int[count];
+        mStateIds = stateIds;
+        
+        for (int i = 0; i < count; ++i) {
+        
+            final int[] spec = specs[i];
+            
+            if (spec == null) {
+            
+                // No mask can both contain and exclude every bit, so this never matches.
+                mForbiddenMasks[i] = -1;
+                mRequiredMasks[i] = -1;
+                
+                continue;
+            
+            }
+            
+            for (int j = 0; j < spec.length; ++j) {
+            
+                final int state = spec[j];
+                
+                if (state == 0)
+                    break;
+                
+                if (state > 0)
+                    mRequiredMasks[i] |= bitOf(state);
+                else
+                    mForbiddenMasks[i] |= bitOf(-state);
+            
+            }
+        
+        }
+        
+        if (stateIds.length <= MAX_TABLE_BITS) {
+        
+            final int size = (1 << stateIds.length);
+            mTable = new int[size];
+            
+            for (int mask = 0; mask < size; ++mask)
+                mTable[mask] = findSpec(mask);
+        
+        } else
+            mTable = null;
+    
+    }
+    
+    private int bitOf(int state) {
+    
+        final int index = ContainerHelpers.binarySearch(mStateIds, mStateIds.length, state);
+        return ((index >= 0) ? (1 << index) : 0);
+    
+    }
+    
+    /** Returns the sorted distinct state ids referenced by the specs, or null if they don't fit a mask. */
+    private static int[] collectStateIds(int[][] specs, int count) {
+    
+        int[] ids = new int[MAX_MASK_BITS];
+        int size = 0;
+        
+        for (int i = 0; i < count; ++i) {
+        
+            final int[] spec = specs[i];
+            
+            if (spec == null)
+                continue;
+            
+            for (int j = 0; j < spec.length; ++j) {
+            
+                final int state = Math.abs(spec[j]);
+                
+                if (state == 0)
+                    break;
+                
+                int index = ContainerHelpers.binarySearch(ids, size, state);
+                
+                if (index >= 0)
+                    continue;
+                
+                if (size == MAX_MASK_BITS)
+                    return null;
+                
+                index = ~index;
+                
+                System.arraycopy(ids, index, ids, (index + 1), (size - index));
+                ids[index] = state;
+                
+                ++size;
+            
+            }
+        
+        }
+        
+        return Arrays.copyOf(ids, size);
+    
+    }
+    
+    /**
+     * Compiles the first count specs.
+     *
+     * <p>Null specs, such as those of transitions in an animated selector, never match.</p>
+     *
+     * @return The compiled specs, or null if they reference more distinct states than fit
+     *         in a mask
+     */
+    static StateSetMatcher compile(int[][] specs, int count) {
+    
+        final int[] stateIds = collectStateIds(specs, count);
+        
+        if (stateIds == null)
+            return null;
+        
+        return new StateSetMatcher(specs, count, stateIds);
+    
+    }
+    
+    /**
+     * Returns the interned copy of the specified state set, an array with the same contents
+     * that is shared by every caller. The returned array must never be modified.
+     */
+    static int[] intern(int[] stateSet) {
+    
+        if (stateSet == null)
+            return null;
+        
+        final SpecsKey key = new SpecsKey(new int[][] { stateSet });
+        final int[] interned = sStateSets.get(key);
+        
+        if (interned != null)
+            return interned;
+        
+        sStateSets.put(key, stateSet);
+        return stateSet;
+    
+    }
+    
+    /**
+     * Same as {@link #compile(int[][], int)}, but returns a shared matcher if the same specs
+     * have been compiled before. The specs must not be modified afterwards.
+     */
+    static StateSetMatcher obtain(int[][] specs, int count) {
+    
+        final SpecsKey key = new SpecsKey(Arrays.copyOf(specs, count));
+        StateSetMatcher matcher = sMatchers.get(key);
+        
+        if (matcher == null) {
+        
+            matcher = compile(specs, count);
+            
+            if (matcher != null)
+                sMatchers.put(key, matcher);
+        
+        }
+        
+        return matcher;
+    
+    }
+    
+    /** Returns the index of the first spec matching the state mask, or -1 if none does. */
+    private int findSpec(int mask) {
+    
+        final int[] forbidden = mForbiddenMasks;
+        final int[] required = mRequiredMasks;
+        
+        for (int i = 0; i < required.length; ++i)
+            if (((mask & required[i]) == required[i]) && ((mask & forbidden[i]) == 0))
+                return i;
+        
+        return -1;
+    
+    }
+    
+    /**
+     * Returns the index of the first spec matching the state set, or -1 if none does.
+     * The result is the same as calling {@link android.util.StateSet#stateSetMatches(int[], int[])}
+     * for each spec in order.
+     */
+    int indexOf(int[] stateSet) {
+    
+        if (stateSet == null) {
+        
+            // A null state set is only matched by wild cards.
+            for (int i = 0; i < mRequiredMasks.length; ++i)
+                if ((mRequiredMasks[i] == 0) && (mForbiddenMasks[i] == 0))
+                    return i;
+            
+            return -1;
+        
+        }
+        
+        final int mask = maskOf(stateSet);
+        return ((mTable != null) ? mTable[mask] : findSpec(mask));
+    
+    }
+    
+    private int maskOf(int[] stateSet) {
+    
+        final int[] ids = mStateIds;
+        int mask = 0;
+        
+        for (int i = 0; i < stateSet.length; ++i) {
+        
+            final int state = stateSet[i];
+            
+            if (state == 0)
+                break;
+            
+            final int index = ContainerHelpers.binarySearch(ids, ids.length, state);
+            
+            if (index >= 0)
+                mask |= (1 << index);
+        
+        }
+        
+        return mask;
+    
+    }
+    
+    /** Compares lists of state specs by content. */
+    private static final class SpecsKey {
+    
+        private final int mHashCode;
+        private final int[][] mSpecs;
+        
+        SpecsKey(int[][] specs) {
+        
+            mHashCode = Arrays.deepHashCode(specs);
+            mSpecs = specs;
+        
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            return ((o instanceof SpecsKey) && Arrays.deepEquals(mSpecs, ((SpecsKey) o).mSpecs));
+        }
+        
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+    
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,531 @@
+package robertapengelly.support.graphics.drawable;
+
+import  android.content.res.ColorStateList;
+import  android.content.res.Resources;
+import  android.content.res.Resources.Theme;
+import  android.graphics.Bitmap;
+import  android.graphics.Canvas;
+import  android.graphics.ColorFilter;
+import  android.graphics.PixelFormat;
+import  android.graphics.PorterDuff.Mode;
+import  android.graphics.Rect;
+import  android.graphics.drawable.Drawable;
+import  android.os.Build;
+import  android.util.TypedValue;
+
+/**
+ * Frame of a streamed {@link AnimationDrawable} that only holds the drawable it shows while
+ * the animation is about to show it. The frame is loaded from its resource on demand and
+ * released again by {@link #release()}, the properties set on the frame in the meantime are
+ * remembered and applied when it is loaded again.
+ *
+ * <p>The size, padding and opacity of the frame are measured the first time they are needed
+ * and shared by every copy of the frame, so measuring the animation doesn't keep all frames
+ * loaded.</p>
+ *
+ * <p>If a default {@link BitmapPool} is installed, frames that are plain image files are
+ * decoded by the frame itself rather than loaded through the drawable cache, so that their
+ * bitmaps can go back to the pool when the frame is released.</p>
+ */
+class StreamedFrameDrawable extends LollipopDrawable implements Drawable.Callback {
+
+    private final FrameState mState;
+    
+    private boolean mHasAlpha;
+    private boolean mHasColorFilter;
+    private boolean mHasDither;
+    private boolean mHasTintList;
+    private boolean mHasTintMode;
+    private boolean mMutated;
+    
+    private boolean mAutoMirrored;
+    private boolean mDither;
+    
+    private int mAlpha = 0xFF;
+    
+    /** Bitmap decoded by this frame that goes back to the pool on release, or null. */
+    private Bitmap mPooledBitmap;
+    
+    private ColorFilter mColorFilter;
+    private ColorStateList mTintList;
+    private Drawable mDrawable;
+    private Mode mTintMode;
+    private Rect mHotspotBounds;
+    private Resources mRes;
+    private Theme mTheme;
+    
+    StreamedFrameDrawable(Resources res, int resId, Theme theme) {
+        this(new FrameState(res, resId), res, theme);
+    }
+    
+    private StreamedFrameDrawable(FrameState state, Resources res, Theme theme) {
+    
+        mRes = ((res != null) ? res : state.mRes);
+        mState = state;
+        mTheme = theme;
+    
+    }
+    
+    @Override
+    public void applyTheme(Theme t) {
+    
+        if (mTheme != t) {
+        
+            // Reload with the new theme the next time the frame is needed.
+            mTheme = t;
+            release();
+        
+        }
+    
+    }
+    
+    @Override
+    public boolean canApplyTheme() {
+        return true;
+    }
+    
+    @Override
+    public void draw(Canvas canvas) {
+        load().draw(canvas);
+    }
+    
+    /** Loads the frame, measures it, and releases it again if it wasn't loaded before. */
+    private void ensureMeasured() {
+    
+        if (mState.mMeasured)
+            return;
+        
+        final boolean wasLoaded = (mDrawable != null);
+        load();
+        
+        if (!wasLoaded)
+            release();
+    
+    }
+    
+    @Override
+    public int getAlpha() {
+        return mAlpha;
+    }
+    
+    @Override
+    public ConstantState getConstantState() {
+        return mState;
+    }
+    
+    @Override
+    public int getIntrinsicHeight() {
+    
+        ensureMeasured();
+        return mState.mIntrinsicHeight;
+    
+    }
+    
+    @Override
+    public int getIntrinsicWidth() {
+    
+        ensureMeasured();
+        return mState.mIntrinsicWidth;
+    
+    }
+    
+    @Override
+    public int getMinimumHeight() {
+    
+        ensureMeasured();
+        return mState.mMinimumHeight;
+    
+    }
+    
+    @Override
+    public int getMinimumWidth() {
+    
+        ensureMeasured();
+        return mState.mMinimumWidth;
+    
+    }
+    
+    @Override
+    public int getOpacity() {
+    
+        ensureMeasured();
+        return mState.mOpacity;
+    
+    }
+    
+    @Override
+    public boolean getPadding(Rect padding) {
+    
+        ensureMeasured();
+        
+        if (mState.mPadding == null) {
+        
+            padding.set(0, 0, 0, 0);
+            return false;
+        
+        }
+        
+        padding.set(mState.mPadding);
+        return true;
+    
+    }
+    
+    @Override
+    public void invalidateDrawable(Drawable who) {
+        invalidateSelf();
+    }
+    
+    @Override
+    public boolean isStateful() {
+    
+        ensureMeasured();
+        return mState.mStateful;
+    
+    }
+    
+    /** Loads the drawable of the frame if needed and brings it up to date with this frame. */
+    Drawable load() {
+    
+        if (mDrawable != null)
+            return mDrawable;
+        
+        Drawable d = null;
+        
+        if ((BitmapPool.getDefault() != null) && mState.isImageFile(mRes)) {
+        
+            final Bitmap bitmap = BitmapDecodePolicy.getDefault().decodeResource(mRes, mState.mResId, null, null, true,
+                true);
+            
+            if (bitmap != null) {
+            
+                d = new BitmapDrawable(mRes, bitmap);
+                mPooledBitmap = bitmap;
+            
+            }
+        
+        }
+        
+        if (d == null)
+            d = LollipopDrawablesCompat.getDrawable(mRes, mState.mResId, mTheme);
+        
+        if (mMutated)
+            d.mutate();
+        
+        if (mHasAlpha)
+            d.setAlpha(mAlpha);
+        
+        if (mHasColorFilter)
+            d.setColorFilter(mColorFilter);
+        
+        if (mHasDither)
+            //noinspection deprecation
+            d.setDither(mDither);
+        
+        if (mHasTintList) {
+        
+            if (d instanceof LollipopDrawable)
+                //noinspection RedundantCast
+                ((LollipopDrawable) d).setTintList(mTintList);
+            else if (Build.VERSION.SDK_INT >= 21)
+                d.setTintList(mTintList);
+        
+        }
+        
+        if (mHasTintMode) {
+        
+            if (d instanceof LollipopDrawable)
+                //noinspection RedundantCast
+                ((LollipopDrawable) d).setTintMode(mTintMode);
+            else if (Build.VERSION.SDK_INT >= 21)
+                d.setTintMode(mTintMode);
+        
+        }
+        
+        if (mHotspotBounds != null) {
+        
+            if (d instanceof LollipopDrawable)
+                //noinspection RedundantCast
+                ((LollipopDrawable) d).setHotspotBounds(mHotspotBounds.left, mHotspotBounds.top,
+                    mHotspotBounds.right, mHotspotBounds.bottom);
+            else if (Build.VERSION.SDK_INT >= 21)
+                d.setHotspotBounds(mHotspotBounds.left, mHotspotBounds.top,
+                    mHotspotBounds.right, mHotspotBounds.bottom);
+        
+        }
+        
+        if (Build.VERSION.SDK_INT >= 19)
+            d.setAutoMirrored(mAutoMirrored);
+        
+        if (Build.VERSION.SDK_INT >= 23)
+            d.setLayoutDirection(getLayoutDirection());
+        
+        d.setBounds(getBounds());
+        d.setLevel(getLevel());
+        d.setState(getState());
+        d.setVisible(isVisible(), false);
+        d.setCallback(this);
+        
+        mDrawable = d;
+        mState.measure(d);
+        
+        return d;
+    
+    }
+    
+    @Override
+    public Drawable mutate() {
+    
+        if (!mMutated && (super.mutate() == this)) {
+        
+            if (mDrawable != null)
+                mDrawable.mutate();
+            
+            mMutated = true;
+        
+        }
+        
+        return this;
+    
+    }
+    
+    @Override
+    protected void onBoundsChange(Rect bounds) {
+    
+        if (mDrawable != null)
+            mDrawable.setBounds(bounds);
+    
+    }
+    
+    @Override
+    protected boolean onLevelChange(int level) {
+        return ((mDrawable != null) && mDrawable.setLevel(level));
+    }
+    
+    @Override
+    protected boolean onStateChange(int[] state) {
+        return ((mDrawable != null) && mDrawable.setState(state));
+    }
+    
+    /** Drops the drawable of the frame so that it can be garbage collected. */
+    void release() {
+    
+        if (mDrawable != null) {
+        
+            mDrawable.setCallback(null);
+            mDrawable = null;
+        
+        }
+        
+        if (mPooledBitmap != null) {
+        
+            final BitmapPool pool = BitmapPool.getDefault();
+            
+            if (pool != null)
+                pool.put(mPooledBitmap);
+            
+            mPooledBitmap = null;
+        
+        }
+    
+    }
+    
+    @Override
+    public void scheduleDrawable(Drawable who, Runnable what, long when) {
+        scheduleSelf(what, when);
+    }
+    
+    @Override
+    public void setAlpha(int alpha) {
+    
+        mAlpha = alpha;
+        mHasAlpha = true;
+        
+        if (mDrawable != null)
+            mDrawable.setAlpha(alpha);
+    
+    }
+    
+    @Override
+    public void setAutoMirrored(boolean mirrored) {
+    
+        mAutoMirrored = mirrored;
+        
+        if ((mDrawable != null) && (Build.VERSION.SDK_INT >= 19))
+            mDrawable.setAutoMirrored(mirrored);
+    
+    }
+    
+    @Override
+    public void setColorFilter(ColorFilter cf) {
+    
+        mColorFilter = cf;
+        mHasColorFilter = true;
+        
+        if (mDrawable != null)
+            mDrawable.setColorFilter(cf);
+    
+    }
+    
+    @Override
+    @SuppressWarnings("deprecation")
+    public void setDither(boolean dither) {
+    
+        mDither = dither;
+        mHasDither = true;
+        
+        if (mDrawable != null)
+            mDrawable.setDither(dither);
+    
+    }
+    
+    @Override
+    public void setHotspotBounds(int left, int top, int right, int bottom) {
+    
+        if (mHotspotBounds == null)
+            mHotspotBounds = new Rect(left, top, right, bottom);
+        else
+            mHotspotBounds.set(left, top, right, bottom);
+        
+        if (mDrawable instanceof LollipopDrawable)
+            ((LollipopDrawable) mDrawable).setHotspotBounds(left, top, right, bottom);
+        else if ((mDrawable != null) && (Build.VERSION.SDK_INT >= 21))
+            mDrawable.setHotspotBounds(left, top, right, bottom);
+    
+    }
+    
+    @Override
+    public void setTintList(ColorStateList tint) {
+    
+        mHasTintList = true;
+        mTintList = tint;
+        
+        if (mDrawable instanceof LollipopDrawable)
+            ((LollipopDrawable) mDrawable).setTintList(tint);
+        else if ((mDrawable != null) && (Build.VERSION.SDK_INT >= 21))
+            mDrawable.setTintList(tint);
+    
+    }
+    
+    @Override
+    public void setTintMode(Mode tintMode) {
+    
+        mHasTintMode = true;
+        mTintMode = tintMode;
+        
+        if (mDrawable instanceof LollipopDrawable)
+            ((LollipopDrawable) mDrawable).setTintMode(tintMode);
+        else if ((mDrawable != null) && (Build.VERSION.SDK_INT >= 21))
+            mDrawable.setTintMode(tintMode);
+    
+    }
+    
+    @Override
+    public boolean setVisible(boolean visible, boolean restart) {
+    
+        if (mDrawable != null)
+            mDrawable.setVisible(visible, restart);
+        
+        return super.setVisible(visible, restart);
+    
+    }
+    
+    @Override
+    public void unscheduleDrawable(Drawable who, Runnable what) {
+        unscheduleSelf(what);
+    }
+    
+    /** Resource of the frame and the metrics measured the first time it was loaded. */
+    static final class FrameState extends ConstantState {
+    
+        private final int mResId;
+        private final Resources mRes;
+        
+        private boolean mMeasured;
+        private boolean mStateful;
+        private boolean mTypeChecked;
+        
+        /** Whether the resource is an image file other than a nine-patch. */
+        private boolean mImageFile;
+        
+        private int mIntrinsicHeight = -1;
+        private int mIntrinsicWidth = -1;
+        private int mMinimumHeight;
+        private int mMinimumWidth;
+        private int mOpacity = PixelFormat.TRANSLUCENT;
+        
+        /** Padding of the frame, or null if it has none. */
+        private Rect mPadding;
+        
+        FrameState(Resources res, int resId) {
+        
+            mRes = res;
+            mResId = resId;
+        
+        }
+        
+        @Override
+        public boolean canApplyTheme() {
+            return true;
+        }
+        
+        @Override
+        public int getChangingConfigurations() {
+            return 0;
+        }
+        
+        boolean isImageFile(Resources res) {
+        
+            if (!mTypeChecked) {
+            
+                final TypedValue value = new TypedValue();
+                res.getValue(mResId, value, true);
+                
+                final String file = ((value.string != null) ? value.string.toString() : "");
+                
+                mImageFile = (!file.endsWith(".9.png") && (file.endsWith(".png") || file.endsWith(".jpg")
+                    || file.endsWith(".jpeg") || file.endsWith(".webp")));
+                mTypeChecked = true;
+            
+            }
+            
+            return mImageFile;
+        
+        }
+        
+        void measure(Drawable d) {
+        
+            if (mMeasured)
+                return;
+            
+            final Rect padding = new Rect();
+            
+            mIntrinsicHeight = d.getIntrinsicHeight();
+            mIntrinsicWidth = d.getIntrinsicWidth();
+            mMinimumHeight = d.getMinimumHeight();
+            mMinimumWidth = d.getMinimumWidth();
+            mOpacity = d.getOpacity();
+            mPadding = (d.getPadding(padding) ? padding : null);
+            mStateful = d.isStateful();
+            
+            mMeasured = true;
+        
+        }
+        
+        @Override
+        public Drawable newDrawable() {
+            return new StreamedFrameDrawable(this, null, null);
+        }
+        
+        @Override
+        public Drawable newDrawable(Resources res) {
+            return new StreamedFrameDrawable(this, res, null);
+        }
+        
+        @Override
+        public Drawable newDrawable(Resources res, Theme theme) {
+            return new StreamedFrameDrawable(this, res, theme);
+        }
+    
+    }
+
+}
\ No newline at end of file
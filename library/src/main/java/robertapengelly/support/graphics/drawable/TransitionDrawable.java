@@ -4,7 +4,6 @@ import  android.content.res.Resources;
 import  android.content.res.Resources.Theme;
 import  android.graphics.Canvas;
 import  android.graphics.drawable.Drawable;
-import  android.os.SystemClock;
 
 /**
  * An extension of LayerDrawables that is intended to cross-fade between
@@ -79,13 +78,13 @@ public class TransitionDrawable extends LayerDrawable implements Drawable.Callba
         
             case TRANSITION_STARTING:
                 done = false;
-                mStartTimeMillis = SystemClock.uptimeMillis();
+                mStartTimeMillis = FrameScheduler.getDefault().currentFrameTimeMillis();
                 mTransitionState = TRANSITION_RUNNING;
                 break;
             case TRANSITION_RUNNING:
                 if (mStartTimeMillis >= 0) {
                 
-                    float normalized = ((float) (SystemClock.uptimeMillis() - mStartTimeMillis) / mDuration);
+                    float normalized = ((float) (FrameScheduler.getDefault().currentFrameTimeMillis() - mStartTimeMillis) / mDuration);
                     done = (normalized >= 1.0f);
                     normalized = Math.min(normalized, 1.0f);
                     
@@ -174,7 +173,7 @@ public class TransitionDrawable extends LayerDrawable implements Drawable.Callba
      */
     public void reverseTransition(int duration) {
     
-        final long time = SystemClock.uptimeMillis();
+        final long time = FrameScheduler.getDefault().currentFrameTimeMillis();
         
         // Animation is over
         if ((time - mStartTimeMillis) > mDuration) {